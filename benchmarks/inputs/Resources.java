@@ -0,0 +1,77 @@
+// The input of ConsistencyCheckBenchmark and TypeFactoryBenchmark. Every method releases all of
+// its resources, so that the checker reports no errors. The resource type is declared here rather
+// than taken from the JDK, so that the input does not depend on the stub files of the checker.
+
+import org.checkerframework.checker.mustcall.qual.MustCall;
+
+class Resources {
+
+  @MustCall("close")
+  static class Resource {
+    static Resource open(int i) {
+      return new Resource();
+    }
+
+    boolean isReady() {
+      return true;
+    }
+
+    void close() {}
+  }
+
+  void sequential() {
+    Resource r1 = Resource.open(1);
+    Resource r2 = Resource.open(2);
+    Resource r3 = Resource.open(3);
+    Resource r4 = Resource.open(4);
+    Resource r5 = Resource.open(5);
+    r1.close();
+    r2.close();
+    r3.close();
+    r4.close();
+    r5.close();
+  }
+
+  void branching(boolean b1, boolean b2, boolean b3, boolean b4) {
+    Resource r1 = Resource.open(1);
+    if (b1) {
+      r1.close();
+      r1 = Resource.open(11);
+    }
+    Resource r2 = b2 ? Resource.open(2) : Resource.open(22);
+    if (b3) {
+      if (r2.isReady()) {
+        r2.close();
+        r2 = Resource.open(222);
+      }
+    }
+    Resource r3 = Resource.open(3);
+    if (b4) {
+      r3.close();
+      r3 = Resource.open(33);
+    }
+    if (b1 && b2) {
+      r1.close();
+      r2.close();
+    } else {
+      r2.close();
+      r1.close();
+    }
+    r3.close();
+  }
+
+  void loops(int n) {
+    for (int i = 0; i < n; i++) {
+      Resource outer = Resource.open(i);
+      for (int j = 0; j < i; j++) {
+        Resource inner = Resource.open(j);
+        if (inner.isReady()) {
+          inner.close();
+        } else {
+          inner.close();
+        }
+      }
+      outer.close();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.checkerframework.checker.objectconstruction;
+
+import com.sun.source.tree.MethodTree;
+import java.util.HashMap;
+import java.util.Map;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.framework.flow.CFAnalysis;
+
+/**
+ * The checker used by the micro-benchmarks: an {@link ObjectConstructionChecker} whose type factory
+ * keeps the CFGs of the methods it analyzes, so that the consistency check can be run on them
+ * again after the compilation.
+ */
+public class BenchmarkChecker extends ObjectConstructionChecker {
+
+  @Override
+  protected BaseTypeVisitor<?> createSourceVisitor() {
+    return new ObjectConstructionVisitor(this) {
+      @Override
+      protected ObjectConstructionAnnotatedTypeFactory createTypeFactory() {
+        return new BenchmarkAnnotatedTypeFactory(checker);
+      }
+    };
+  }
+
+  /**
+   * Returns the type factory of this checker, once the compilation is done.
+   *
+   * @return the type factory of this checker
+   */
+  BenchmarkAnnotatedTypeFactory getBenchmarkTypeFactory() {
+    return (BenchmarkAnnotatedTypeFactory) getTypeFactory();
+  }
+
+  /** A type factory that keeps the CFGs of the methods that it analyzes. */
+  static class BenchmarkAnnotatedTypeFactory extends ObjectConstructionAnnotatedTypeFactory {
+
+    /** The CFG of each method that has been analyzed, keyed by the name of the method. */
+    private final Map<String, ControlFlowGraph> cfgs = new HashMap<>();
+
+    /**
+     * Creates a new type factory.
+     *
+     * @param checker the checker associated with this type factory
+     */
+    BenchmarkAnnotatedTypeFactory(BaseTypeChecker checker) {
+      super(checker);
+    }
+
+    @Override
+    public void postAnalyze(ControlFlowGraph cfg) {
+      UnderlyingAST underlyingAST = cfg.getUnderlyingAST();
+      if (underlyingAST instanceof UnderlyingAST.CFGMethod) {
+        MethodTree method = ((UnderlyingAST.CFGMethod) underlyingAST).getMethod();
+        cfgs.put(method.getName().toString(), cfg);
+      }
+      super.postAnalyze(cfg);
+    }
+
+    /**
+     * Runs the dataflow analysis of this type factory on the CFG of the given method again, so
+     * that the consistency check can be run on it, and returns the CFG.
+     *
+     * @param methodName the name of a method that has been analyzed
+     * @return the CFG of the method
+     */
+    ControlFlowGraph reanalyze(String methodName) {
+      ControlFlowGraph cfg = cfgs.get(methodName);
+      if (cfg == null) {
+        throw new IllegalArgumentException("No method named " + methodName + " was analyzed");
+      }
+      analysis.performAnalysis(cfg);
+      return cfg;
+    }
+
+    /**
+     * Returns the dataflow analysis of this type factory.
+     *
+     * @return the dataflow analysis of this type factory
+     */
+    CFAnalysis getAnalysis() {
+      return analysis;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.checkerframework.checker.objectconstruction;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Runs the checker in-process on fixed inputs, for the benchmarks. The inputs are found relative to
+ * the root of the repository, which is the working directory of the {@code jmh} Gradle task.
+ */
+final class BenchmarkCompiler {
+
+  /** The directory that contains the test inputs of the checker. */
+  static final File TESTS_DIR = new File("object-construction-checker/tests");
+
+  /** The directory that contains the inputs written for the benchmarks. */
+  static final File INPUTS_DIR = new File("benchmarks/inputs");
+
+  /** Do not instantiate. */
+  private BenchmarkCompiler() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Returns the Java files in the given directory, in a fixed order.
+   *
+   * @param dir a directory
+   * @return the Java files in {@code dir}
+   */
+  static List<File> javaFiles(File dir) {
+    File[] files = dir.listFiles((d, name) -> name.endsWith(".java"));
+    if (files == null) {
+      throw new UncheckedIOException(new IOException("Cannot list " + dir.getAbsolutePath()));
+    }
+    Arrays.sort(files);
+    return Arrays.asList(files);
+  }
+
+  /**
+   * Type-checks the given files with the given checker, and returns the diagnostics. No class
+   * files are written.
+   *
+   * @param files the files to check
+   * @param checker the checker; a new instance must be used for each compilation
+   * @param checkerOptions the {@code -A} options to pass to the checker
+   * @return the diagnostics of the compilation
+   */
+  static List<Diagnostic<? extends JavaFileObject>> check(
+      List<File> files, Processor checker, List<String> checkerOptions) {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavacTask task = createTask(files, checker, checkerOptions, diagnostics);
+    task.call();
+    return diagnostics.getDiagnostics();
+  }
+
+  /**
+   * Type-checks the given files with the given checker, and returns their trees, which can be
+   * inspected together with the type factories of the checker.
+   *
+   * @param files the files to check
+   * @param checker the checker; a new instance must be used for each compilation
+   * @param checkerOptions the {@code -A} options to pass to the checker
+   * @return the compilation units of {@code files}, after they have been type-checked
+   */
+  static List<CompilationUnitTree> analyze(
+      List<File> files, Processor checker, List<String> checkerOptions) {
+    JavacTask task = createTask(files, checker, checkerOptions, new DiagnosticCollector<>());
+    List<CompilationUnitTree> result = new ArrayList<>();
+    try {
+      task.parse().forEach(result::add);
+      task.analyze();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return result;
+  }
+
+  /**
+   * Creates a compilation task that runs only the given checker.
+   *
+   * @param files the files to check
+   * @param checker the checker
+   * @param checkerOptions the {@code -A} options to pass to the checker
+   * @param diagnostics the collector of the diagnostics of the compilation
+   * @return a compilation task
+   */
+  private static JavacTask createTask(
+      List<File> files,
+      Processor checker,
+      List<String> checkerOptions,
+      DiagnosticCollector<JavaFileObject> diagnostics) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    List<String> options = new ArrayList<>();
+    options.add("-proc:only");
+    options.add("-classpath");
+    options.add(System.getProperty("java.class.path"));
+    options.addAll(checkerOptions);
+    JavacTask task =
+        (JavacTask)
+            compiler.getTask(
+                null,
+                fileManager,
+                diagnostics,
+                options,
+                null,
+                fileManager.getJavaFileObjectsFromFiles(files));
+    task.setProcessors(Collections.singletonList(checker));
+    return task;
+  }
+}
@@ -0,0 +1,73 @@
+package org.checkerframework.checker.objectconstruction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the end-to-end time of type-checking a directory of test inputs with the must-call
+ * consistency check enabled, in each of its modes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckerBenchmark {
+
+  /** The directory of {@link BenchmarkCompiler#TESTS_DIR} to check. */
+  @Param({"mustcall", "socket", "cve"})
+  public String testDir;
+
+  /**
+   * The mode of the consistency check: {@code default}, or the name of the option that selects
+   * the mode.
+   */
+  @Param({
+    "default",
+    ObjectConstructionChecker.MERGE_MUST_CALL_STATES,
+    ObjectConstructionChecker.SPARSE_MUST_CALL_TRAVERSAL,
+    ObjectConstructionChecker.SLICE_MUST_CALL_OBLIGATIONS
+  })
+  public String mode;
+
+  /** The files to check. */
+  private List<File> files;
+
+  /** The options passed to the checker. */
+  private List<String> options;
+
+  /** Finds the files to check and computes the options. */
+  @Setup
+  public void setUp() {
+    files = BenchmarkCompiler.javaFiles(new File(BenchmarkCompiler.TESTS_DIR, testDir));
+    options = new ArrayList<>();
+    options.add("-A" + ObjectConstructionChecker.CHECK_MUST_CALL);
+    if (!mode.equals("default")) {
+      options.add("-A" + mode);
+    }
+  }
+
+  /**
+   * Type-checks the files.
+   *
+   * @return the number of diagnostics, so that the compilation cannot be optimized away
+   */
+  @Benchmark
+  public int check() {
+    return BenchmarkCompiler.check(files, new ObjectConstructionChecker(), options).size();
+  }
+}
@@ -0,0 +1,64 @@
+package org.checkerframework.checker.objectconstruction;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.checker.objectconstruction.BenchmarkChecker.BenchmarkAnnotatedTypeFactory;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MustCallInvokedChecker#checkMustCallInvoked} on its own, without the dataflow
+ * analyses that precede it. The methods of {@code benchmarks/inputs/Resources.java} are
+ * type-checked once, and the consistency check is then run repeatedly on the CFG of one of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsistencyCheckBenchmark {
+
+  /** The method of {@code Resources.java} to check. */
+  @Param({"sequential", "branching", "loops"})
+  public String method;
+
+  /** The checker. */
+  private BenchmarkChecker checker;
+
+  /** The type factory of {@link #checker}. */
+  private BenchmarkAnnotatedTypeFactory typeFactory;
+
+  /** The CFG of {@link #method}. */
+  private ControlFlowGraph cfg;
+
+  /** Type-checks the input, and re-runs the dataflow analysis of {@link #method}. */
+  @Setup
+  public void setUp() {
+    checker = new BenchmarkChecker();
+    BenchmarkCompiler.analyze(
+        Collections.singletonList(new File(BenchmarkCompiler.INPUTS_DIR, "Resources.java")),
+        checker,
+        Collections.singletonList("-A" + ObjectConstructionChecker.CHECK_MUST_CALL));
+    typeFactory = checker.getBenchmarkTypeFactory();
+    cfg = typeFactory.reanalyze(method);
+  }
+
+  /** Runs the consistency check on the CFG of {@link #method}. */
+  @Benchmark
+  public void checkMustCallInvoked() {
+    new MustCallInvokedChecker(typeFactory, checker, typeFactory.getAnalysis())
+        .checkMustCallInvoked(cfg);
+  }
+}
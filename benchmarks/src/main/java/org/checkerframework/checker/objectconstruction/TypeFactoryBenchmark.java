@@ -0,0 +1,111 @@
+package org.checkerframework.checker.objectconstruction;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreeScanner;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import org.checkerframework.checker.objectconstruction.MustCallInvokedChecker.LocalVarWithTree;
+import org.checkerframework.dataflow.expression.LocalVariable;
+import org.checkerframework.javacutil.TreeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the queries of {@link ObjectConstructionAnnotatedTypeFactory} that the consistency
+ * check makes for every tracked resource. The type factory is the one left by type-checking {@code
+ * benchmarks/inputs/Resources.java}, whose memo tables are warm after the first invocation, as
+ * they are during the check of a large method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeFactoryBenchmark {
+
+  /** The type factory. */
+  private ObjectConstructionAnnotatedTypeFactory typeFactory;
+
+  /** The locals declared in {@code Resources#sequential}, all of type {@code Resource}. */
+  private List<LocalVarWithTree> locals;
+
+  /** The element of the first local in {@link #locals}. */
+  private Element local;
+
+  /** Type-checks the input and finds its locals. */
+  @Setup
+  public void setUp() {
+    ObjectConstructionChecker checker = new ObjectConstructionChecker();
+    List<CompilationUnitTree> roots =
+        BenchmarkCompiler.analyze(
+            Collections.singletonList(new File(BenchmarkCompiler.INPUTS_DIR, "Resources.java")),
+            checker,
+            Collections.singletonList("-A" + ObjectConstructionChecker.CHECK_MUST_CALL));
+    typeFactory = (ObjectConstructionAnnotatedTypeFactory) checker.getTypeFactory();
+    locals = new ArrayList<>();
+    for (CompilationUnitTree root : roots) {
+      root.accept(
+          new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitMethod(MethodTree tree, Void p) {
+              return tree.getName().contentEquals("sequential") ? super.visitMethod(tree, p) : null;
+            }
+
+            @Override
+            public Void visitVariable(VariableTree tree, Void p) {
+              Element element = TreeUtils.elementFromDeclaration(tree);
+              locals.add(new LocalVarWithTree(new LocalVariable(element), tree));
+              return super.visitVariable(tree, p);
+            }
+          },
+          null);
+    }
+    local = locals.get(0).localVar.getElement();
+  }
+
+  /**
+   * Creates a called-methods annotation.
+   *
+   * @return the annotation
+   */
+  @Benchmark
+  public AnnotationMirror createCalledMethods() {
+    return typeFactory.createCalledMethods("isReady", "close");
+  }
+
+  /**
+   * Computes the must-call obligation of a set of aliases, without a store.
+   *
+   * @return the must-call methods of the aliases
+   */
+  @Benchmark
+  public List<String> getMustCallValueOfAliases() {
+    return typeFactory.getMustCallValue(locals, null);
+  }
+
+  /**
+   * Computes the must-call obligation of the declared type of a local.
+   *
+   * @return the must-call methods of the local
+   */
+  @Benchmark
+  public List<String> getMustCallValueOfElement() {
+    return typeFactory.getMustCallValue(local);
+  }
+}
@@ -0,0 +1,192 @@
+package org.checkerframework.checker.mustcall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import org.checkerframework.checker.mustcall.qual.CreatesObligation;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
+import org.checkerframework.dataflow.expression.JavaExpression;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * The {@link CreatesObligation} annotations of a method: the unparsed targets of all its
+ * annotations, whether written singly or as a {@link CreatesObligation.List}, and a template for
+ * each target that can be instantiated at a call site without the expression parser. Type
+ * factories that implement {@link Provider} compute it once per method, because it is needed at
+ * every invocation of every method in each dataflow analysis.
+ */
+public final class CreatesObligationInfo {
+
+  /** The information of a method that has no {@link CreatesObligation} annotation. */
+  private static final CreatesObligationInfo NONE =
+      new CreatesObligationInfo(Collections.emptyList(), null);
+
+  /** The template of a target that is the receiver of the method, "this". */
+  private static final int RECEIVER = -1;
+
+  /** The template of a target that must be parsed at each call site. */
+  private static final int UNKNOWN = -2;
+
+  /** Matches a target that is a formal parameter of the method, such as "#1". */
+  private static final Pattern PARAMETER = Pattern.compile("#([1-9][0-9]*)");
+
+  /** A type factory that memoizes the {@link CreatesObligationInfo} of each method. */
+  public interface Provider {
+    /**
+     * Returns the {@link CreatesObligation} annotations of the given method.
+     *
+     * @param method a method or constructor
+     * @return the {@link CreatesObligation} annotations of {@code method}
+     */
+    CreatesObligationInfo getCreatesObligationInfo(ExecutableElement method);
+  }
+
+  /**
+   * The target of each {@link CreatesObligation} annotation of the method, unparsed, with the
+   * default "this" for annotations that have none.
+   */
+  private final List<String> targets;
+
+  /**
+   * The template of each element of {@link #targets}: {@link #RECEIVER}, the 0-based index of a
+   * formal parameter, or {@link #UNKNOWN} if the target must be parsed.
+   */
+  private final int[] templates;
+
+  /**
+   * Creates a new CreatesObligationInfo, and computes the template of each target.
+   *
+   * @param targets the targets of the annotations
+   * @param method the annotated method, or null if {@code targets} is empty
+   */
+  private CreatesObligationInfo(List<String> targets, @Nullable ExecutableElement method) {
+    this.targets = targets;
+    this.templates = new int[targets.size()];
+    for (int i = 0; i < templates.length; i++) {
+      templates[i] = template(targets.get(i), method);
+    }
+  }
+
+  /**
+   * Returns the template of a target. A target is only instantiated without the parser if the
+   * parser would yield the receiver or an argument of the call unchanged; other targets, as well
+   * as the receiver of a static method and the varargs parameter, are parsed at each call site.
+   *
+   * @param target a target of a {@link CreatesObligation} annotation of {@code method}
+   * @param method the annotated method
+   * @return {@link #RECEIVER}, the 0-based index of a formal parameter, or {@link #UNKNOWN}
+   */
+  private static int template(String target, ExecutableElement method) {
+    if (target.equals("this")) {
+      return method.getModifiers().contains(Modifier.STATIC) ? UNKNOWN : RECEIVER;
+    }
+    Matcher m = PARAMETER.matcher(target);
+    if (m.matches()) {
+      int numParams = method.getParameters().size();
+      int index = Integer.parseInt(m.group(1)) - 1;
+      if (index < numParams && !(method.isVarArgs() && index == numParams - 1)) {
+        return index;
+      }
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Returns true if the method has at least one {@link CreatesObligation} annotation.
+   *
+   * @return true if the method has at least one {@link CreatesObligation} annotation
+   */
+  public boolean hasCreatesObligation() {
+    return !targets.isEmpty();
+  }
+
+  /**
+   * Returns the target of each {@link CreatesObligation} annotation of the method, unparsed, with
+   * the default "this" for annotations that have none.
+   *
+   * @return the unmodifiable list of targets, which is empty iff the method has no {@link
+   *     CreatesObligation} annotation
+   */
+  public List<String> getTargets() {
+    return targets;
+  }
+
+  /**
+   * Viewpoint-adapts a target to a call site by substituting the receiver or an argument of the
+   * call, if the target is one of them. This gives the same result as {@link
+   * org.checkerframework.framework.util.StringToJavaExpression#atMethodInvocation} on the target,
+   * without parsing it.
+   *
+   * @param index the index of the target in {@link #getTargets()}
+   * @param invocation an invocation of the method
+   * @return the target at {@code invocation}, or null if it must be parsed
+   */
+  public @Nullable JavaExpression instantiate(int index, MethodInvocationNode invocation) {
+    int template = templates[index];
+    if (template == RECEIVER) {
+      return JavaExpression.fromNode(invocation.getTarget().getReceiver());
+    } else if (template >= 0 && template < invocation.getArguments().size()) {
+      return JavaExpression.fromNode(invocation.getArgument(template));
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the {@link CreatesObligation} annotations of a method, as seen by the given type
+   * factory. The result is memoized if the type factory is a {@link Provider}.
+   *
+   * @param method a method or constructor
+   * @param atypeFactory the type factory whose declaration annotations are read
+   * @return the {@link CreatesObligation} annotations of {@code method}
+   */
+  public static CreatesObligationInfo get(
+      ExecutableElement method, AnnotatedTypeFactory atypeFactory) {
+    if (atypeFactory instanceof Provider) {
+      return ((Provider) atypeFactory).getCreatesObligationInfo(method);
+    }
+    return compute(method, atypeFactory);
+  }
+
+  /**
+   * Reads the {@link CreatesObligation} annotations of a method, without memoization. Type
+   * factories that implement {@link Provider} should call this method the first time that a method
+   * is looked up.
+   *
+   * @param method a method or constructor
+   * @param atypeFactory the type factory whose declaration annotations are read
+   * @return the {@link CreatesObligation} annotations of {@code method}
+   */
+  @SuppressWarnings("deprecation") // The type factory may not have the value elements.
+  public static CreatesObligationInfo compute(
+      ExecutableElement method, AnnotatedTypeFactory atypeFactory) {
+    AnnotationMirror createsObligationList =
+        atypeFactory.getDeclAnnotation(method, CreatesObligation.List.class);
+    if (createsObligationList != null) {
+      List<AnnotationMirror> createsObligations =
+          AnnotationUtils.getElementValueArray(
+              createsObligationList, "value", AnnotationMirror.class, true);
+      List<String> targets = new ArrayList<>(createsObligations.size());
+      for (AnnotationMirror co : createsObligations) {
+        targets.add(AnnotationUtils.getElementValue(co, "value", String.class, true));
+      }
+      return new CreatesObligationInfo(Collections.unmodifiableList(targets), method);
+    }
+    AnnotationMirror createsObligation =
+        atypeFactory.getDeclAnnotation(method, CreatesObligation.class);
+    if (createsObligation == null) {
+      return NONE;
+    }
+    return new CreatesObligationInfo(
+        Collections.singletonList(
+            AnnotationUtils.getElementValue(createsObligation, "value", String.class, true)),
+        method);
+  }
+}
@@ -0,0 +1,123 @@
+package org.checkerframework.checker.mustcall;
+
+import com.sun.source.tree.Tree;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+
+/**
+ * Measures the time that a type factory spends in dataflow analysis, for each method, lambda and
+ * initializer.
+ *
+ * <p>The Checker Framework analyzes the CFGs of a class one after the other, and calls {@code
+ * postAnalyze} on each CFG as soon as its analysis is done. The time attributed to a CFG is the
+ * time between the previous call to {@link #resume()} (or the start of the analysis of the class)
+ * and the call to {@link #cfgAnalyzed(ControlFlowGraph)} for the CFG, which includes building the
+ * CFG. The work that a type factory does in {@code postAnalyze} should happen between these two
+ * calls, so that it is not attributed to the next CFG.
+ *
+ * <p>The analysis of one type factory may trigger the analysis of another, such as the analysis of
+ * a subchecker that it queries. The time spent by the timer of that other analysis, if it is given
+ * as the nested timer, is not attributed to the CFGs of this timer.
+ */
+public final class DataflowTimer {
+
+  /** The timer of an analysis that may run during the analysis of this timer, or null. */
+  private final @Nullable DataflowTimer nested;
+
+  /** The dataflow time of each CFG, in nanoseconds, keyed by the tree of the CFG. */
+  private final Map<Tree, Long> nanosByTree = new IdentityHashMap<>();
+
+  /** The number of analyses of classes in progress. Only the outermost one is timed. */
+  private int depth = 0;
+
+  /** The time at which the outermost analysis of a class in progress started. */
+  private long classStart;
+
+  /** The time from which the next CFG is timed. */
+  private long mark;
+
+  /** The total time of the nested timer at {@link #mark}. */
+  private long nestedMark;
+
+  /** The total time spent in the analyses of classes that have completed, in nanoseconds. */
+  private long totalNanos = 0;
+
+  /**
+   * Creates a new timer.
+   *
+   * @param nested the timer of an analysis that may run during the analysis of this timer, whose
+   *     time is not attributed to the CFGs of this timer; or null
+   */
+  public DataflowTimer(@Nullable DataflowTimer nested) {
+    this.nested = nested;
+  }
+
+  /** Records that the analysis of a class starts. */
+  public void start() {
+    if (depth++ == 0) {
+      classStart = System.nanoTime();
+      resume();
+    }
+  }
+
+  /** Records that the analysis of a class is done. */
+  public void stop() {
+    if (--depth == 0) {
+      totalNanos += System.nanoTime() - classStart;
+    }
+  }
+
+  /**
+   * Records that the analysis of the given CFG is done, and attributes the time since the last
+   * call to {@link #resume()} to it.
+   *
+   * @param cfg a CFG whose analysis is done
+   */
+  public void cfgAnalyzed(ControlFlowGraph cfg) {
+    if (depth == 0) {
+      return;
+    }
+    long nanos = System.nanoTime() - mark;
+    if (nested != null) {
+      nanos -= nested.totalNanos - nestedMark;
+    }
+    nanosByTree.merge(treeOf(cfg.getUnderlyingAST()), nanos, Long::sum);
+  }
+
+  /** Starts timing the next CFG. */
+  public void resume() {
+    mark = System.nanoTime();
+    nestedMark = nested == null ? 0 : nested.totalNanos;
+  }
+
+  /**
+   * Returns the dataflow time of the CFG of the given tree, and forgets it.
+   *
+   * @param tree the tree of a method, lambda or initializer; see {@link #treeOf(UnderlyingAST)}
+   * @return the time spent analyzing the CFG of {@code tree}, in nanoseconds, or 0 if it has not
+   *     been analyzed since the last call to this method for {@code tree}
+   */
+  public long takeNanos(Tree tree) {
+    Long nanos = nanosByTree.remove(tree);
+    return nanos == null ? 0 : nanos;
+  }
+
+  /**
+   * Returns the tree that a CFG was built from.
+   *
+   * @param underlyingAST the underlying AST of a CFG
+   * @return the method, lambda or initializer of {@code underlyingAST}
+   */
+  public static Tree treeOf(UnderlyingAST underlyingAST) {
+    if (underlyingAST instanceof UnderlyingAST.CFGMethod) {
+      return ((UnderlyingAST.CFGMethod) underlyingAST).getMethod();
+    } else if (underlyingAST instanceof UnderlyingAST.CFGLambda) {
+      return ((UnderlyingAST.CFGLambda) underlyingAST).getLambdaTree();
+    } else {
+      return ((UnderlyingAST.CFGStatement) underlyingAST).getCode();
+    }
+  }
+}
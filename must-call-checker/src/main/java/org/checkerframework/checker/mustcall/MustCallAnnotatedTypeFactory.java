@@ -1,5 +1,6 @@
 package org.checkerframework.checker.mustcall;
 
+import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.IdentifierTree;
@@ -8,16 +9,23 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.Tree;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeKind;
 import org.checkerframework.checker.mustcall.qual.CreatesObligation;
 import org.checkerframework.checker.mustcall.qual.InheritableMustCall;
@@ -29,6 +37,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.objectconstruction.qual.Owning;
 import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
 import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
 import org.checkerframework.dataflow.cfg.node.Node;
@@ -51,7 +60,8 @@ import org.checkerframework.javacutil.TypesUtils;
  * The annotated type factory for the must call checker. Primarily responsible for the subtyping
  * rules between @MustCall annotations.
  */
-public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
+public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory
+    implements CreatesObligationInfo.Provider {
 
   /** The top annotation. */
   public final AnnotationMirror TOP;
@@ -76,6 +86,47 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
   /* package-private */ HashMap<Tree, LocalVariableNode> tempVars =
       new HashMap<>(this.getCacheSize());
 
+  /**
+   * Measures the time spent in the dataflow analysis of each method, or null if it is not
+   * measured. Set by a checker that reports statistics; see {@link #enableDataflowTimer}.
+   */
+  private @Nullable DataflowTimer dataflowTimer = null;
+
+  /**
+   * The canonical {@link MustCall} annotation for each set of methods, keyed by the sorted,
+   * deduplicated method names; see {@link #createMustCall}.
+   */
+  private final Map<List<String>, AnnotationMirror> mustCallAnnotations = new HashMap<>();
+
+  /**
+   * Memo table for {@link #withoutClose}, keyed by the identity of the input annotation. Cleared
+   * for each compilation unit.
+   */
+  private final Map<AnnotationMirror, AnnotationMirror> withoutCloseCache = new IdentityHashMap<>();
+
+  /**
+   * The {@link MustCall} annotation implied by the {@link InheritableMustCall} annotation of each
+   * class that has been looked up by {@link #fromElement}, or null if the class has none.
+   */
+  private final Map<Element, @Nullable AnnotationMirror> inheritedMustCallAnnotations =
+      new HashMap<>();
+
+  /**
+   * The default must-call annotation of each class; see {@link #getDefaultMustCall}. Unlike most
+   * caches of this class, it is not cleared for each compilation unit: the default of a class
+   * depends only on the declarations of the class and of its supertypes and on the stub files,
+   * which are all parsed before the first compilation unit is checked.
+   */
+  private final Map<TypeElement, AnnotationMirror> defaultMustCallAnnotations = new HashMap<>();
+
+  /**
+   * The {@link CreatesObligation} annotations of each method that has been looked up; see {@link
+   * #getCreatesObligationInfo}. Not cleared for each compilation unit, because declaration
+   * annotations do not change during a compilation.
+   */
+  private final Map<ExecutableElement, CreatesObligationInfo> createsObligationInfos =
+      new HashMap<>();
+
   /** The MustCall.value field/element. */
   public final ExecutableElement mustCallValueElement =
       TreeUtils.getMethod(MustCall.class, "value", 0, processingEnv);
@@ -101,6 +152,8 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     super(checker);
     TOP = AnnotationBuilder.fromClass(elements, MustCallUnknown.class);
     BOTTOM = createMustCall();
+    // Most resources must only be closed; create their annotation eagerly.
+    createMustCall("close");
     POLY = AnnotationBuilder.fromClass(elements, PolyMustCall.class);
     addAliasedTypeAnnotation(InheritableMustCall.class, MustCall.class, true);
     if (!checker.hasOption(MustCallChecker.NO_RESOURCE_ALIASES)) {
@@ -114,6 +167,7 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
   public void setRoot(@Nullable CompilationUnitTree root) {
     super.setRoot(root);
     elementsIssuedInconsistentMustCallSubtypeErrors.clear();
+    withoutCloseCache.clear();
     // TODO: this should probably be guarded by isSafeToClearSharedCFG from
     // GenericAnnotatedTypeFactory,
     // but this works here because we know the MCC is always the first subchecker that's sharing
@@ -121,6 +175,44 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     tempVars.clear();
   }
 
+  /**
+   * Starts measuring the time spent in the dataflow analysis of each method, lambda and
+   * initializer, if it is not measured yet.
+   *
+   * @return the timer that measures the dataflow analysis of this type factory
+   */
+  public DataflowTimer enableDataflowTimer() {
+    if (dataflowTimer == null) {
+      dataflowTimer = new DataflowTimer(null);
+    }
+    return dataflowTimer;
+  }
+
+  @Override
+  protected void performFlowAnalysis(ClassTree classTree) {
+    if (dataflowTimer == null) {
+      super.performFlowAnalysis(classTree);
+      return;
+    }
+    dataflowTimer.start();
+    try {
+      super.performFlowAnalysis(classTree);
+    } finally {
+      dataflowTimer.stop();
+    }
+  }
+
+  @Override
+  public void postAnalyze(ControlFlowGraph cfg) {
+    if (dataflowTimer != null) {
+      dataflowTimer.cfgAnalyzed(cfg);
+    }
+    super.postAnalyze(cfg);
+    if (dataflowTimer != null) {
+      dataflowTimer.resume();
+    }
+  }
+
   @Override
   protected Set<Class<? extends Annotation>> createSupportedTypeQualifiers() {
     // Because MustCallAlias is in the qual directory, the qualifiers have to be explicitly named
@@ -147,7 +239,13 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     if (TypesUtils.isPrimitiveOrBoxed(type.getUnderlyingType())) {
       type.replaceAnnotation(BOTTOM);
     }
-    if (isDeclaredInTryWithResources(TreeUtils.elementFromTree(tree))) {
+    // A resource variable can only be referred to by its declaration or by its simple name, so
+    // there is no need to look up the element of other trees.
+    Tree.Kind kind = tree.getKind();
+    if ((kind == Tree.Kind.VARIABLE
+            || kind == Tree.Kind.IDENTIFIER
+            || kind == Tree.Kind.PARENTHESIZED)
+        && isDeclaredInTryWithResources(TreeUtils.elementFromTree(tree))) {
       type.replaceAnnotation(withoutClose(type.getAnnotationInHierarchy(TOP)));
     }
   }
@@ -172,6 +270,9 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
    *
    * <p>Package private to permit usage from the visitor in the common assignment check.
    *
+   * <p>The result is memoized for each compilation unit, because the type of a resource variable
+   * is recomputed at each of its uses.
+   *
    * @param anno a MustCall annotation
    * @return a MustCall annotation that does not have "close" as one of its values, but is otherwise
    *     identical to anno
@@ -184,12 +285,19 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         anno, "org.checkerframework.checker.mustcall.qual.MustCall")) {
       return anno;
     }
-    List<String> values =
-        AnnotationUtils.getElementValueArray(anno, mustCallValueElement, String.class);
-    if (!values.contains("close")) {
-      return anno;
+    AnnotationMirror result = withoutCloseCache.get(anno);
+    if (result == null) {
+      List<String> values =
+          AnnotationUtils.getElementValueArray(anno, mustCallValueElement, String.class);
+      if (!values.contains("close")) {
+        result = anno;
+      } else {
+        result =
+            createMustCall(values.stream().filter(s -> !"close".equals(s)).toArray(String[]::new));
+      }
+      withoutCloseCache.put(anno, result);
     }
-    return createMustCall(values.stream().filter(s -> !"close".equals(s)).toArray(String[]::new));
+    return result;
   }
 
   /**
@@ -262,12 +370,8 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     AnnotatedTypeMirror type = super.fromElement(elt);
     // Support @InheritableMustCall meaning @MustCall on all class declaration elements.
     if (ElementUtils.isTypeElement(elt)) {
-      AnnotationMirror inheritableMustCall = getDeclAnnotation(elt, InheritableMustCall.class);
-      if (inheritableMustCall != null) {
-        List<String> mustCallVal =
-            AnnotationUtils.getElementValueArray(
-                inheritableMustCall, inheritableMustCallValueElement, String.class);
-        AnnotationMirror inheritedMCAnno = createMustCall(mustCallVal.toArray(new String[0]));
+      AnnotationMirror inheritedMCAnno = getInheritedMustCall(elt);
+      if (inheritedMCAnno != null) {
         // Ensure that there isn't an inconsistent, user-written @MustCall annotation and
         // issue an error if there is. Otherwise, replace the implicit @MustCall({}) with
         // the inherited must-call annotation.
@@ -281,7 +385,7 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 "inconsistent.mustcall.subtype",
                 elt.getSimpleName(),
                 writtenMCAnno,
-                inheritableMustCall);
+                getDeclAnnotation(elt, InheritableMustCall.class));
             elementsIssuedInconsistentMustCallSubtypeErrors.add(elt);
           }
         } else {
@@ -293,24 +397,117 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
   }
 
   /**
-   * Creates a {@link MustCall} annotation whose values are the given strings.
+   * Returns the {@link MustCall} annotation implied by the {@link InheritableMustCall} annotation
+   * of a class. The result is memoized.
+   *
+   * @param elt a class declaration
+   * @return the {@link MustCall} annotation with the values of the {@link InheritableMustCall}
+   *     annotation of {@code elt}, or null if it has none
+   */
+  private @Nullable AnnotationMirror getInheritedMustCall(Element elt) {
+    if (inheritedMustCallAnnotations.containsKey(elt)) {
+      return inheritedMustCallAnnotations.get(elt);
+    }
+    AnnotationMirror inheritableMustCall = getDeclAnnotation(elt, InheritableMustCall.class);
+    AnnotationMirror result = null;
+    if (inheritableMustCall != null) {
+      List<String> mustCallVal =
+          AnnotationUtils.getElementValueArray(
+              inheritableMustCall, inheritableMustCallValueElement, String.class);
+      result = createMustCall(mustCallVal.toArray(new String[0]));
+    }
+    inheritedMustCallAnnotations.put(elt, result);
+    return result;
+  }
+
+  /**
+   * Returns the must-call annotation of the type declared by a class, which is the default
+   * must-call type of its instances. The result is memoized for the whole compilation, because the
+   * consistency check falls back to it for every resource that is missing from the store.
+   *
+   * @param typeElt a class declaration
+   * @return the must-call annotation of the type declared by {@code typeElt}
+   */
+  public AnnotationMirror getDefaultMustCall(TypeElement typeElt) {
+    AnnotationMirror result = defaultMustCallAnnotations.get(typeElt);
+    if (result == null) {
+      result = getAnnotatedType(typeElt).getAnnotationInHierarchy(TOP);
+      defaultMustCallAnnotations.put(typeElt, result);
+    }
+    return result;
+  }
+
+  @Override
+  public CreatesObligationInfo getCreatesObligationInfo(ExecutableElement method) {
+    CreatesObligationInfo result = createsObligationInfos.get(method);
+    if (result == null) {
+      result = CreatesObligationInfo.compute(method, this);
+      createsObligationInfos.put(method, result);
+    }
+    return result;
+  }
+
+  /**
+   * Creates a {@link MustCall} annotation whose values are the given strings. The result is
+   * canonical: equal sets of methods, in any order and with any duplicates, yield the same
+   * instance, so the qualifier hierarchy can compare them by identity.
    *
    * @param val the methods that should be called
    * @return an annotation indicating that the given methods should be called
    */
   public AnnotationMirror createMustCall(final String... val) {
-    AnnotationBuilder builder = new AnnotationBuilder(processingEnv, MustCall.class);
-    Arrays.sort(val);
-    builder.setValue("value", val);
-    return builder.build();
+    List<String> key = new ArrayList<>(new TreeSet<>(Arrays.asList(val)));
+    AnnotationMirror result = mustCallAnnotations.get(key);
+    if (result == null) {
+      AnnotationBuilder builder = new AnnotationBuilder(processingEnv, MustCall.class);
+      builder.setValue("value", key);
+      result = builder.build();
+      mustCallAnnotations.put(key, result);
+    }
+    return result;
   }
 
   @Override
   public QualifierHierarchy createQualifierHierarchy() {
-    return new SubtypeIsSubsetQualifierHierarchy(
+    return new MustCallQualifierHierarchy(
         this.getSupportedTypeQualifiers(), this.getProcessingEnv());
   }
 
+  /**
+   * The qualifier hierarchy of the Must Call type system, which short-circuits on identical
+   * annotations before comparing their values. Because {@link #createMustCall} is canonical, most
+   * comparisons during dataflow are between identical annotations.
+   */
+  private static class MustCallQualifierHierarchy extends SubtypeIsSubsetQualifierHierarchy {
+
+    /**
+     * Creates a new qualifier hierarchy.
+     *
+     * @param qualifierClasses the classes of the qualifiers of the hierarchy
+     * @param processingEnv the processing environment
+     */
+    MustCallQualifierHierarchy(
+        Collection<Class<? extends Annotation>> qualifierClasses,
+        ProcessingEnvironment processingEnv) {
+      super(qualifierClasses, processingEnv);
+    }
+
+    @Override
+    public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+      return subAnno == superAnno || super.isSubtype(subAnno, superAnno);
+    }
+
+    @Override
+    public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+      return a1 == a2 ? a1 : super.leastUpperBound(a1, a2);
+    }
+
+    @Override
+    public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+      return a1 == a2 ? a1 : super.greatestLowerBound(a1, a2);
+    }
+  }
+
   /**
    * Fetches the store from the results of dataflow, for either block (if noSuccInfo is true) or
    * succ (if noSuccInfo is false).
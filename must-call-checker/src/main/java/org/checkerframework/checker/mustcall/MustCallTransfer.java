@@ -13,7 +13,6 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.type.TypeMirror;
-import org.checkerframework.checker.mustcall.qual.CreatesObligation;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.analysis.RegularTransferResult;
@@ -35,7 +34,6 @@ import org.checkerframework.framework.flow.CFValue;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
 import org.checkerframework.framework.util.JavaExpressionParseUtil.JavaExpressionParseException;
 import org.checkerframework.framework.util.StringToJavaExpression;
-import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.TreePathUtil;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
@@ -176,7 +174,7 @@ public class MustCallTransfer extends CFTransfer {
    * @param n a method invocation
    * @param atypeFactory the type factory to report errors and parse the expression string
    * @param currentPath the path to n, if it is already available, to avoid potentially-expensive
-   *     recomputation. If null, the path will be computed.
+   *     recomputation. If null, the path will be computed if a target needs to be parsed.
    * @return a list of JavaExpressions representing the targets, if the method is a
    *     CreatesObligation method and the targets are parseable; the empty set otherwise.
    */
@@ -185,59 +183,45 @@ public class MustCallTransfer extends CFTransfer {
       GenericAnnotatedTypeFactory<?, ?, ?, ?> atypeFactory,
       @Nullable TreePath currentPath) {
 
-    AnnotationMirror createsObligationList =
-        atypeFactory.getDeclAnnotation(n.getTarget().getMethod(), CreatesObligation.List.class);
-    if (createsObligationList != null) {
-      // Handle a set of create obligation annotations.
-      @SuppressWarnings("deprecation")
-      List<AnnotationMirror> createsObligations =
-          AnnotationUtils.getElementValueArray(
-              createsObligationList, "value", AnnotationMirror.class, true);
-      Set<JavaExpression> results = new HashSet<>();
-      if (currentPath == null) {
-        currentPath = atypeFactory.getPath(n.getTree());
-      }
-      for (AnnotationMirror co : createsObligations) {
-        JavaExpression expr = getCreatesObligationExpressionsImpl(co, n, atypeFactory, currentPath);
-        if (expr != null) {
-          results.add(expr);
-        }
-      }
-      return results;
-    }
-    AnnotationMirror createsObligation =
-        atypeFactory.getDeclAnnotation(n.getTarget().getMethod(), CreatesObligation.class);
-    if (createsObligation == null) {
+    CreatesObligationInfo info =
+        CreatesObligationInfo.get(n.getTarget().getMethod(), atypeFactory);
+    if (!info.hasCreatesObligation()) {
       return Collections.emptySet();
     }
-
-    // Handle a single create obligation annotation.
-    if (currentPath == null) {
-      currentPath = atypeFactory.getPath(n.getTree());
+    Set<JavaExpression> results = new HashSet<>();
+    List<String> targets = info.getTargets();
+    for (int i = 0; i < targets.size(); i++) {
+      JavaExpression expr = info.instantiate(i, n);
+      if (expr == null) {
+        // only targets that could not be pre-parsed need the path
+        if (currentPath == null) {
+          currentPath = atypeFactory.getPath(n.getTree());
+        }
+        expr = getCreatesObligationExpressionsImpl(targets.get(i), n, atypeFactory, currentPath);
+      }
+      if (expr != null) {
+        results.add(expr);
+      }
     }
-    JavaExpression expr =
-        getCreatesObligationExpressionsImpl(createsObligation, n, atypeFactory, currentPath);
-    return expr != null ? Collections.singleton(expr) : Collections.emptySet();
+    return results;
   }
 
   /**
-   * Implementation of parsing a single CreatesObligation annotation. See {@link
-   * #getCreatesObligationExpressions(MethodInvocationNode, MustCallAnnotatedTypeFactory)}.
+   * Implementation of parsing the target of a single CreatesObligation annotation, for targets
+   * that {@link CreatesObligationInfo#instantiate} cannot adapt without the parser. See {@link
+   * #getCreatesObligationExpressions(MethodInvocationNode, GenericAnnotatedTypeFactory)}.
    *
-   * @param createsObligation a create obligation annotation
+   * @param targetStrWithoutAdaptation the target of a create obligation annotation
    * @param n the method invocation of a reset method
    * @param atypeFactory the type factory
    * @param currentPath the current path
    * @return the java expression representing the target, or null if the target is unparseable
    */
   private static @Nullable JavaExpression getCreatesObligationExpressionsImpl(
-      AnnotationMirror createsObligation,
+      String targetStrWithoutAdaptation,
       MethodInvocationNode n,
       GenericAnnotatedTypeFactory<?, ?, ?, ?> atypeFactory,
       TreePath currentPath) {
-    @SuppressWarnings("deprecation")
-    String targetStrWithoutAdaptation =
-        AnnotationUtils.getElementValue(createsObligation, "value", String.class, true);
     // TODO: find a way to also check if the target is a known tempvar, and if so return that. That
     // should
     // improve the quality of the error messages we give, e.g. in tests/socket/BindChannel.java.
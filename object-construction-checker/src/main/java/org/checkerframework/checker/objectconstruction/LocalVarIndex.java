@@ -0,0 +1,347 @@
+package org.checkerframework.checker.objectconstruction;
+
+import com.sun.source.tree.Tree;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.Element;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.checker.objectconstruction.MustCallInvokedChecker.LocalVarWithTree;
+import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
+import org.checkerframework.dataflow.expression.LocalVariable;
+
+/**
+ * A per-method index that lets {@link MustCallInvokedChecker} represent its tracked definitions as
+ * dense bitsets rather than as nested hash sets.
+ *
+ * <p>Each {@link LocalVarWithTree} that the analysis encounters is assigned a small integer, so an
+ * alias set (a set of locals that all refer to the same resource) is a {@link BitSet} of local
+ * indices. Each distinct alias set is in turn assigned an integer, so a set of tracked definitions
+ * is a {@link BitSet} of alias set indices, and gen/kill operations become word operations on
+ * those bitsets.
+ *
+ * <p>This class also interns the locals and alias sets: equal locals and equal alias sets get the
+ * same index, so they can be compared by index. Locals are looked up by the identity of their
+ * element and tree, so interning never computes {@link LocalVariable#hashCode()} (which is
+ * computed from strings) or {@link LocalVarWithTree#hashCode()}.
+ *
+ * <p>For each variable, this class also maintains the indices of the alias sets that contain one
+ * of its locals, so the sets of a set of tracked definitions that contain a variable can be found,
+ * or killed, with a single bitset operation instead of a scan of every tracked alias set.
+ *
+ * <p>The index of an alias set also records the order in which its locals were added to it, so
+ * that errors about the set are reported on the local that was tracked first, as when alias sets
+ * were ordered sets of locals. Since equal sets share an index, the order is that of the first
+ * path on which the set was reached.
+ *
+ * <p>Variables are numbered too, independently of the trees that assign them, so that the analysis
+ * can tell which variables are tracked on every path when it joins the states of several paths.
+ *
+ * <p>The alias sets and masks returned by this class are shared, and must not be modified.
+ */
+/* package-private */ final class LocalVarIndex {
+
+  /** A shared, empty bitset. Must not be modified. */
+  private static final BitSet EMPTY = new BitSet(0);
+
+  /** The locals that have been assigned an index, in order of their indices. */
+  private final List<LocalVarWithTree> locals = new ArrayList<>();
+
+  /**
+   * The index of each local in {@link #locals}, keyed by the identity of its variable element and
+   * then by the identity of its tree.
+   */
+  private final Map<Element, Map<Tree, Integer>> localIds = new IdentityHashMap<>();
+
+  /**
+   * For each variable element, the indices of the locals whose variable is that element. This is
+   * the mask used to find or kill every (local, tree) pair of a variable at once.
+   */
+  private final Map<Element, BitSet> localsByElement = new IdentityHashMap<>();
+
+  /** The alias sets that have been assigned an index, in order of their indices. */
+  private final List<BitSet> aliasSets = new ArrayList<>();
+
+  /** The index of each alias set in {@link #aliasSets}. */
+  private final Map<BitSet, Integer> aliasSetIds = new HashMap<>();
+
+  /**
+   * The local indices of each alias set in {@link #aliasSets}, in the order in which the locals
+   * were added to the set; see {@link #aliasSetId(BitSet, int)}.
+   */
+  private final List<int[]> aliasSetOrders = new ArrayList<>();
+
+  /**
+   * The locals of each alias set in {@link #aliasSets}, in the order of {@link #aliasSetOrders}.
+   * Computed lazily by {@link #locals(int)}; null for the sets whose locals were not needed yet.
+   */
+  private final List<@Nullable List<LocalVarWithTree>> aliasSetLocals = new ArrayList<>();
+
+  /**
+   * For each variable element, the indices of the alias sets that contain a local whose variable is
+   * that element. Updated whenever a new alias set is assigned an index.
+   */
+  private final Map<Element, BitSet> aliasSetsByElement = new IdentityHashMap<>();
+
+  /**
+   * The index of each variable element that has been assigned one. Unlike locals, variables are
+   * not distinguished by the tree that assigns them; see {@link #variableId(Element)}.
+   */
+  private final Map<Element, Integer> variableIds = new IdentityHashMap<>();
+
+  /** The index of the variable of each local in {@link #locals}, in the same order. */
+  private final List<Integer> localVariableIds = new ArrayList<>();
+
+  /**
+   * Returns the index of the pair of {@code var} and {@code tree}, assigning it a new one if it
+   * does not have one yet. Only allocates a {@link LocalVarWithTree} if the pair is new.
+   *
+   * @param var a local variable
+   * @param tree the tree that assigns {@code var}
+   * @return the index of the pair
+   */
+  int localId(LocalVariableNode var, Tree tree) {
+    Integer id = lookUpLocal(var.getElement(), tree);
+    return id != null ? id : addLocal(new LocalVarWithTree(new LocalVariable(var), tree));
+  }
+
+  /**
+   * Returns the index of the pair of {@code var} and {@code tree}, assigning it a new one if it
+   * does not have one yet. Only allocates a {@link LocalVarWithTree} if the pair is new.
+   *
+   * @param var the element of a local variable or formal parameter
+   * @param tree the tree that assigns {@code var}
+   * @return the index of the pair
+   */
+  int localId(Element var, Tree tree) {
+    Integer id = lookUpLocal(var, tree);
+    return id != null ? id : addLocal(new LocalVarWithTree(new LocalVariable(var), tree));
+  }
+
+  /**
+   * Returns the index of the local with the given element and tree, if it has one.
+   *
+   * @param element a variable element
+   * @param tree the tree that assigns the variable
+   * @return the index of the local, or null if it has not been assigned one
+   */
+  private @Nullable Integer lookUpLocal(Element element, Tree tree) {
+    Map<Tree, Integer> idsByTree = localIds.get(element);
+    return idsByTree == null ? null : idsByTree.get(tree);
+  }
+
+  /**
+   * Assigns a new index to a local that does not have one yet.
+   *
+   * @param local a local that has not been assigned an index
+   * @return the new index of {@code local}
+   */
+  private int addLocal(LocalVarWithTree local) {
+    int id = locals.size();
+    Element element = local.localVar.getElement();
+    locals.add(local);
+    localVariableIds.add(variableId(element));
+    localIds.computeIfAbsent(element, e -> new IdentityHashMap<>()).put(local.tree, id);
+    localsByElement.computeIfAbsent(element, e -> new BitSet()).set(id);
+    return id;
+  }
+
+  /**
+   * Returns the local with the given index.
+   *
+   * @param id the index of a local
+   * @return the local with index {@code id}
+   */
+  LocalVarWithTree local(int id) {
+    return locals.get(id);
+  }
+
+  /**
+   * Returns the indices of all locals whose variable is {@code element}.
+   *
+   * @param element a variable element
+   * @return a mask of the locals for {@code element}, which must not be modified
+   */
+  BitSet localsOf(Element element) {
+    BitSet result = localsByElement.get(element);
+    return result == null ? EMPTY : result;
+  }
+
+  /**
+   * Returns the index of the given variable, assigning it a new one if it does not have one yet.
+   * All the locals of a variable, whatever tree assigns them, share its index, so sets of variable
+   * indices can say whether a variable is tracked without regard to where it was assigned.
+   *
+   * @param element a variable element
+   * @return the index of {@code element}
+   */
+  int variableId(Element element) {
+    Integer id = variableIds.get(element);
+    if (id == null) {
+      id = variableIds.size();
+      variableIds.put(element, id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the indices of the variables of the locals in the given alias sets.
+   *
+   * @param aliasSetIds a set of alias set indices
+   * @return a new set of the indices (see {@link #variableId(Element)}) of the variables of the
+   *     locals in the alias sets {@code aliasSetIds}
+   */
+  BitSet variablesOf(BitSet aliasSetIds) {
+    BitSet result = new BitSet();
+    for (int setId = aliasSetIds.nextSetBit(0);
+        setId >= 0;
+        setId = aliasSetIds.nextSetBit(setId + 1)) {
+      BitSet aliasSet = aliasSets.get(setId);
+      for (int localId = aliasSet.nextSetBit(0);
+          localId >= 0;
+          localId = aliasSet.nextSetBit(localId + 1)) {
+        result.set(localVariableIds.get(localId));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the index of the given alias set, assigning it a new one if it does not have one yet.
+   * If {@code aliasSet} is assigned a new index, this index takes ownership of it: the caller must
+   * not modify it afterwards.
+   *
+   * <p>If the set is assigned a new index, its locals are ordered as in the alias set from which
+   * it was derived, and the locals that are not in that set come last, ordered by index.
+   *
+   * @param aliasSet a non-empty set of local indices
+   * @param derivedFrom the index of the alias set that {@code aliasSet} was computed from by
+   *     adding or removing locals, or -1 if it is a new set
+   * @return the index of {@code aliasSet}
+   */
+  int aliasSetId(BitSet aliasSet, int derivedFrom) {
+    Integer id = aliasSetIds.get(aliasSet);
+    if (id == null) {
+      id = aliasSets.size();
+      aliasSets.add(aliasSet);
+      aliasSetIds.put(aliasSet, id);
+      aliasSetOrders.add(order(aliasSet, derivedFrom));
+      aliasSetLocals.add(null);
+      for (int localId = aliasSet.nextSetBit(0);
+          localId >= 0;
+          localId = aliasSet.nextSetBit(localId + 1)) {
+        Element element = locals.get(localId).localVar.getElement();
+        aliasSetsByElement.computeIfAbsent(element, e -> new BitSet()).set(id);
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Returns the index of the given alias set, assigning it a new one if it does not have one yet,
+   * in which case its locals are ordered by index. See {@link #aliasSetId(BitSet, int)}.
+   *
+   * @param aliasSet a non-empty set of local indices
+   * @return the index of {@code aliasSet}
+   */
+  int aliasSetId(BitSet aliasSet) {
+    return aliasSetId(aliasSet, -1);
+  }
+
+  /**
+   * Orders the locals of a new alias set: first the locals of the set it was derived from, in
+   * their order, then the other locals, by index.
+   *
+   * @param aliasSet a non-empty set of local indices
+   * @param derivedFrom the index of the alias set that {@code aliasSet} was computed from, or -1
+   * @return the local indices of {@code aliasSet}, in order
+   */
+  private int[] order(BitSet aliasSet, int derivedFrom) {
+    int[] result = new int[aliasSet.cardinality()];
+    int n = 0;
+    BitSet added = aliasSet;
+    if (derivedFrom >= 0) {
+      for (int localId : aliasSetOrders.get(derivedFrom)) {
+        if (aliasSet.get(localId)) {
+          result[n++] = localId;
+        }
+      }
+      added = (BitSet) aliasSet.clone();
+      added.andNot(aliasSets.get(derivedFrom));
+    }
+    for (int localId = added.nextSetBit(0); localId >= 0; localId = added.nextSetBit(localId + 1)) {
+      result[n++] = localId;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the indices of all alias sets that contain a local whose variable is {@code element}.
+   * Intersecting the result with a set of tracked definitions yields the tracked alias sets that
+   * contain the variable.
+   *
+   * @param element a variable element
+   * @return a mask of the alias sets that contain {@code element}, which must not be modified
+   */
+  BitSet aliasSetsOf(Element element) {
+    BitSet result = aliasSetsByElement.get(element);
+    return result == null ? EMPTY : result;
+  }
+
+  /**
+   * Returns the index of the alias set that contains only the given local.
+   *
+   * @param localId the index of a local
+   * @return the index of the singleton alias set {@code {localId}}
+   */
+  int singletonAliasSetId(int localId) {
+    BitSet aliasSet = new BitSet(localId + 1);
+    aliasSet.set(localId);
+    return aliasSetId(aliasSet);
+  }
+
+  /**
+   * Returns the alias set with the given index.
+   *
+   * @param id the index of an alias set
+   * @return the set of local indices with index {@code id}, which must not be modified
+   */
+  BitSet aliasSet(int id) {
+    return aliasSets.get(id);
+  }
+
+  /**
+   * Returns the index of the local that was added first to the alias set with the given index.
+   *
+   * @param aliasSetId the index of an alias set
+   * @return the index of the first local of the alias set
+   */
+  int firstLocal(int aliasSetId) {
+    return aliasSetOrders.get(aliasSetId)[0];
+  }
+
+  /**
+   * Returns the locals in the alias set with the given index, in the order in which they were added
+   * to the set.
+   *
+   * @param aliasSetId the index of an alias set
+   * @return the locals of the alias set, which must not be modified
+   */
+  List<LocalVarWithTree> locals(int aliasSetId) {
+    List<LocalVarWithTree> result = aliasSetLocals.get(aliasSetId);
+    if (result == null) {
+      int[] order = aliasSetOrders.get(aliasSetId);
+      result = new ArrayList<>(order.length);
+      for (int localId : order) {
+        result.add(locals.get(localId));
+      }
+      result = Collections.unmodifiableList(result);
+      aliasSetLocals.set(aliasSetId, result);
+    }
+    return result;
+  }
+}
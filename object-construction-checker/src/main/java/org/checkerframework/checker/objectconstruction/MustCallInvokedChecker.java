@@ -1,32 +1,39 @@
 package org.checkerframework.checker.objectconstruction;
 
+import com.sun.source.tree.AssignmentTree;
 import com.sun.source.tree.ConditionalExpressionTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
-import com.sun.tools.javac.code.Type;
+import com.sun.source.util.TreeScanner;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
-import javax.lang.model.element.Name;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
-import org.checkerframework.checker.calledmethods.qual.CalledMethods;
+import org.checkerframework.checker.compilermsgs.qual.CompilerMessageKey;
 import org.checkerframework.checker.mustcall.MustCallAnnotatedTypeFactory;
 import org.checkerframework.checker.mustcall.MustCallChecker;
 import org.checkerframework.checker.mustcall.MustCallTransfer;
@@ -34,9 +41,7 @@ import org.checkerframework.checker.mustcall.qual.MustCall;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.objectconstruction.qual.NotOwning;
 import org.checkerframework.checker.objectconstruction.qual.Owning;
-import org.checkerframework.checker.signature.qual.FullyQualifiedName;
-import org.checkerframework.com.google.common.collect.FluentIterable;
-import org.checkerframework.com.google.common.collect.ImmutableSet;
+import org.checkerframework.dataflow.analysis.TransferInput;
 import org.checkerframework.dataflow.cfg.ControlFlowGraph;
 import org.checkerframework.dataflow.cfg.UnderlyingAST;
 import org.checkerframework.dataflow.cfg.block.Block;
@@ -61,8 +66,6 @@ import org.checkerframework.dataflow.expression.ThisReference;
 import org.checkerframework.framework.flow.CFAnalysis;
 import org.checkerframework.framework.flow.CFStore;
 import org.checkerframework.framework.flow.CFValue;
-import org.checkerframework.framework.util.JavaExpressionParseUtil.JavaExpressionParseException;
-import org.checkerframework.framework.util.StringToJavaExpression;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
@@ -81,8 +84,88 @@ class MustCallInvokedChecker {
   /** By default, should we transfer ownership to the caller when a variable is returned? */
   static final boolean TRANSFER_OWNERSHIP_AT_RETURN = true;
 
-  /** {@code @MustCall} errors reported thus far, to avoid duplicates */
-  private final Set<LocalVarWithTree> reportedMustCallErrors = new HashSet<>();
+  /**
+   * Indices (see {@link #index}) of the locals for which {@code @MustCall} errors have been
+   * reported thus far, to avoid duplicates
+   */
+  private final BitSet reportedMustCallErrors = new BitSet();
+
+  /**
+   * The dense numbering of the locals and alias sets of the method being checked. The tracked
+   * definitions ("defs") passed between the methods of this class are sets of alias set indices
+   * from this index.
+   */
+  private final LocalVarIndex index = new LocalVarIndex();
+
+  /**
+   * True if the states of the method being checked are currently being joined, either because the
+   * {@link ObjectConstructionChecker#MERGE_MUST_CALL_STATES} option was supplied or because the
+   * path-sensitive analysis of the method exceeded a limit.
+   */
+  private boolean joiningStates;
+
+  /**
+   * While states are joined, the indices (see {@link LocalVarIndex#variableId}) of the variables
+   * that are tracked on every path that reaches the node being analyzed; null otherwise. The
+   * transfer functions update this set together with the joined defs, and the checks that depend
+   * on whether a variable is tracked consult it rather than the joined defs; see {@link
+   * JoiningStateWorklist}.
+   */
+  private @Nullable BitSet commonVars;
+
+  /**
+   * The blocks that may start tracking a local, or null if the {@link
+   * ObjectConstructionChecker#SPARSE_MUST_CALL_TRAVERSAL} option was not supplied. Computed on
+   * demand; see {@link #getSparseSuccessors(Block)}.
+   */
+  private final @Nullable Map<Block, Boolean> blocksThatMayStartTracking;
+
+  /**
+   * The blocks to which each block passes control when no locals are tracked, or null if the
+   * {@link ObjectConstructionChecker#SPARSE_MUST_CALL_TRAVERSAL} option was not supplied. Computed
+   * on demand; see {@link #getSparseSuccessors(Block)}.
+   */
+  private final @Nullable Map<Block, Set<Block>> sparseSuccessors;
+
+  /**
+   * The calls whose results are tracked by the current slice, if the {@link
+   * ObjectConstructionChecker#SLICE_MUST_CALL_OBLIGATIONS} option was supplied; see {@link
+   * #checkSlices}. Null if all calls are tracked. Compared by identity.
+   */
+  private @Nullable Set<Node> sliceAllocations;
+
+  /** The cached results of {@link #getRelevantSuccessors(Block)}, keyed by block identity. */
+  private final Map<Block, List<Pair<Block, @Nullable TypeMirror>>> relevantSuccessors =
+      new IdentityHashMap<>();
+
+  /**
+   * For each invocation of a {@code @CreatesObligation} method at which the current slice found
+   * targets that are neither tracked nor owning, those targets. Null unless slicing; see {@link
+   * #checkSlices}.
+   */
+  private @Nullable Map<MethodInvocationNode, Set<JavaExpression>> sliceResetTargets;
+
+  /**
+   * The re-assignments of owning fields at which the current slice did not track the receiver,
+   * with their enclosing methods. Null unless slicing; see {@link #checkSlices}.
+   */
+  private @Nullable Map<AssignmentNode, MethodTree> sliceUntrackedReceivers;
+
+  /**
+   * False if obligations should not be counted for the {@link
+   * ObjectConstructionChecker#COUNT_MUST_CALL} option, because the current slice is not the first
+   * one.
+   */
+  private boolean countingSlice = true;
+
+  /** True if a limit on the analysis of the current method has already been reported. */
+  private boolean limitReported = false;
+
+  /**
+   * The entry of the {@link MustCallResultCache} that records the diagnostics reported for the
+   * current method, or null if they are not cached.
+   */
+  private MustCallResultCache.@Nullable Entry cacheEntry = null;
 
   private final ObjectConstructionAnnotatedTypeFactory typeFactory;
 
@@ -98,6 +181,13 @@ class MustCallInvokedChecker {
     this.typeFactory = typeFactory;
     this.checker = checker;
     this.analysis = analysis;
+    if (checker.hasOption(ObjectConstructionChecker.SPARSE_MUST_CALL_TRAVERSAL)) {
+      this.blocksThatMayStartTracking = new IdentityHashMap<>();
+      this.sparseSuccessors = new IdentityHashMap<>();
+    } else {
+      this.blocksThatMayStartTracking = null;
+      this.sparseSuccessors = null;
+    }
   }
 
   /**
@@ -106,29 +196,320 @@ class MustCallInvokedChecker {
    * of scope. The traverse is a standard worklist algorithm. Worklist and visited entries are
    * BlockWithLocals objects that contain a set of (LocalVariableNode, Tree) pairs for each block. A
    * pair (n, T) represents a local variable node "n" and the latest AssignmentTree "T" that assigns
-   * a value to "n".
+   * a value to "n". Sets of pairs are represented as bitsets over the {@link #index}.
+   *
+   * <p>By default, every distinct set of tracked locals that reaches a block is explored
+   * separately. If the {@link ObjectConstructionChecker#MERGE_MUST_CALL_STATES} option is
+   * supplied, the incoming sets of each block are joined instead; see {@link
+   * JoiningStateWorklist}. In both cases, blocks are processed in the order given by {@link
+   * BlockOrder}.
+   *
+   * <p>If the path-sensitive analysis processes more states or takes more time than allowed by the
+   * {@link ObjectConstructionChecker#MUST_CALL_STATE_LIMIT} and {@link
+   * ObjectConstructionChecker#MUST_CALL_TIME_LIMIT} options, the states that remain on its
+   * worklist are joined, and the rest of the method is analyzed as if the {@link
+   * ObjectConstructionChecker#MERGE_MUST_CALL_STATES} option had been supplied.
+   *
+   * <p>Methods without owning parameters are first scanned by {@link #mayCreateObligations}, and
+   * the traversal is skipped entirely if they cannot create any obligations. If the {@link
+   * ObjectConstructionChecker#SPARSE_MUST_CALL_TRAVERSAL} option is supplied, the traversal also
+   * skips the blocks that are reached with no tracked locals and cannot start tracking one; see
+   * {@link #getSparseSuccessors(Block)}. If the {@link
+   * ObjectConstructionChecker#SLICE_MUST_CALL_OBLIGATIONS} option is supplied, the obligations of
+   * the method are analyzed separately; see {@link #checkSlices}.
+   *
+   * <p>If the {@link ObjectConstructionChecker#MUST_CALL_RESULT_CACHE} option is supplied and the
+   * method is unchanged since a previous compilation, the diagnostics of that compilation are
+   * reported again instead; see {@link MustCallResultCache}. Results are not cached if the {@link
+   * ObjectConstructionChecker#COUNT_MUST_CALL} option is supplied, because it counts the work of
+   * the analysis, if the {@link ObjectConstructionChecker#MUST_CALL_TIME_LIMIT} option is
+   * supplied, because whether the limit is reached depends on the speed of the machine, or if the
+   * {@link ObjectConstructionChecker#OWNERSHIP_SUMMARIES} option is supplied, because the results
+   * then depend on the bodies of the callees.
+   *
+   * <p>If the {@link ObjectConstructionChecker#OWNERSHIP_SUMMARIES} option is supplied, the
+   * summary of the method is recorded first; see {@link #recordOwnershipSummary}.
    *
    * @param cfg the control flow graph of a method
    */
   /* package-private */
   void checkMustCallInvoked(ControlFlowGraph cfg) {
-    // add any owning parameters to initial set of variables to track
-    BlockWithLocals firstBlockLocals =
-        new BlockWithLocals(cfg.getEntryBlock(), computeOwningParameters(cfg));
+    OwnershipSummaries summaries = checker.ownershipSummaries;
+    if (summaries != null) {
+      recordOwnershipSummary(cfg, summaries);
+    }
+    MustCallResultCache resultCache = checker.mustCallResultCache;
+    if (resultCache != null
+        && summaries == null
+        && !checker.hasOption(ObjectConstructionChecker.COUNT_MUST_CALL)
+        && checker.mustCallTimeLimit < 0) {
+      cacheEntry = resultCache.lookUp(cfg, typeFactory);
+      if (cacheEntry != null) {
+        if (cacheEntry.replay()) {
+          if (typeFactory.methodStats != null) {
+            typeFactory.methodStats.replayed = 1;
+          }
+          return;
+        }
+        checkMustCallInvokedImpl(cfg);
+        cacheEntry.store();
+        return;
+      }
+    }
+    checkMustCallInvokedImpl(cfg);
+  }
 
-    Set<BlockWithLocals> visited = new LinkedHashSet<>();
-    Deque<BlockWithLocals> worklist = new ArrayDeque<>();
+  /**
+   * Records which parameters the method represented by the given CFG closes, in its {@link
+   * OwnershipSummaries ownership summary}. A parameter is closed if it is not {@code @Owning} or
+   * {@code @MustCallAlias}, has a must-call obligation, is never reassigned, and its obligation is
+   * satisfied at the normal exit of the method and on each edge to the exceptional exit that this
+   * check does not ignore. The stores are those that {@link #handleSuccessorBlocks} would use to
+   * check the parameter if it were {@code @Owning}.
+   *
+   * @param cfg the control flow graph of a method, lambda or initializer
+   * @param summaries the ownership summaries
+   */
+  private void recordOwnershipSummary(ControlFlowGraph cfg, OwnershipSummaries summaries) {
+    UnderlyingAST underlyingAST = cfg.getUnderlyingAST();
+    if (!(underlyingAST instanceof UnderlyingAST.CFGMethod)) {
+      return;
+    }
+    MethodTree method = ((UnderlyingAST.CFGMethod) underlyingAST).getMethod();
 
-    worklist.add(firstBlockLocals);
-    visited.add(firstBlockLocals);
+    List<@Nullable CFStore> exitStores = new ArrayList<>();
+    TransferInput<CFValue, CFStore> regularExit = analysis.getInput(cfg.getRegularExitBlock());
+    if (regularExit != null) {
+      exitStores.add(regularExit.getRegularStore());
+    }
+    Block exceptionalExit = cfg.getExceptionalExitBlock();
+    for (Block block : cfg.getAllBlocks()) {
+      for (Pair<Block, @Nullable TypeMirror> succAndExcType : getRelevantSuccessors(block)) {
+        if (succAndExcType.first != exceptionalExit) {
+          continue;
+        }
+        List<Node> nodes = block.getNodes();
+        if (nodes.isEmpty()) {
+          TransferInput<CFValue, CFStore> input = analysis.getInput(block);
+          exitStores.add(input == null ? null : input.getRegularStore());
+        } else {
+          exitStores.add(typeFactory.getStoreAfter(nodes.get(nodes.size() - 1)));
+        }
+      }
+    }
 
+    Set<Element> reassigned = new HashSet<>();
+    new TreeScanner<Void, Void>() {
+      @Override
+      public Void visitAssignment(AssignmentTree tree, Void p) {
+        Element variable = TreeUtils.elementFromTree(tree.getVariable());
+        if (variable != null) {
+          reassigned.add(variable);
+        }
+        return super.visitAssignment(tree, p);
+      }
+    }.scan(method.getBody(), null);
+
+    int closedParameters = 0;
+    List<? extends VariableTree> params = method.getParameters();
+    for (int i = 0; i < params.size() && i < OwnershipSummaries.MAX_PARAMETERS; i++) {
+      VariableElement param = TreeUtils.elementFromDeclaration(params.get(i));
+      if (param.getAnnotation(Owning.class) != null
+          || typeFactory.hasMustCallAlias(param)
+          || reassigned.contains(param)) {
+        continue;
+      }
+      List<String> mustCallValue = typeFactory.getMustCallValue(param);
+      if (mustCallValue.isEmpty()) {
+        continue;
+      }
+      LocalVariable paramVar = new LocalVariable(param);
+      boolean closed = true;
+      for (CFStore store : exitStores) {
+        CFValue value = store == null ? null : store.getValue(paramVar);
+        AnnotationMirror cmAnno =
+            value == null
+                ? null
+                : value.getAnnotations().stream()
+                    .filter(
+                        anno ->
+                            AnnotationUtils.areSameByName(
+                                anno,
+                                "org.checkerframework.checker.calledmethods.qual.CalledMethods"))
+                    .findAny()
+                    .orElse(null);
+        if (cmAnno == null || !typeFactory.calledMethodsSatisfyMustCall(mustCallValue, cmAnno)) {
+          closed = false;
+          break;
+        }
+      }
+      if (closed) {
+        closedParameters |= 1 << i;
+      }
+    }
+    summaries.record(TreeUtils.elementFromDeclaration(method), closedParameters);
+  }
+
+  /**
+   * Checks the given CFG, without consulting the {@link MustCallResultCache}.
+   *
+   * @param cfg the control flow graph of a method
+   */
+  private void checkMustCallInvokedImpl(ControlFlowGraph cfg) {
+    BitSet owningParameters = computeOwningParameters(cfg);
+    boolean countMustCall = checker.hasOption(ObjectConstructionChecker.COUNT_MUST_CALL);
+    if (owningParameters.isEmpty() && !mayCreateObligations(cfg)) {
+      if (countMustCall) {
+        checker.numMustCallMethodsSkipped++;
+      }
+      return;
+    }
+    if (countMustCall) {
+      checker.numMustCallMethodsAnalyzed++;
+    }
+
+    BlockOrder order = new BlockOrder(cfg);
+    if (checker.hasOption(ObjectConstructionChecker.SLICE_MUST_CALL_OBLIGATIONS)) {
+      checkSlices(cfg, order, owningParameters);
+    } else {
+      analyze(cfg, order, owningParameters);
+    }
+  }
+
+  /**
+   * Checks each obligation of the given CFG separately. Since each set of tracked locals is
+   * updated and checked independently of the others (see {@link #handleSuccessorBlocks}), the
+   * obligations can be checked one at a time: each slice
+   * starts with a single {@link Owning} parameter, or tracks the result of a single call whose type
+   * has a non-empty {@code @MustCall} annotation. The first slice tracks the results of all other
+   * calls, whose aliases may acquire obligations later. The number of states of each slice does
+   * not depend on the other obligations of the method, so the total cost is roughly linear in the
+   * number of obligations. Errors about obligations are deduplicated by {@link
+   * #reportedMustCallErrors}.
+   *
+   * <p>Two checks depend on whether some local is tracked at all, which only the full set of slices
+   * can tell: a {@code @CreatesObligation} target and the receiver of a re-assigned owning field
+   * are only reported as invalid if they are untracked in every slice. This over-approximates the
+   * errors of the unsliced analysis, which requires the target to be untracked in all slices on the
+   * same path.
+   *
+   * @param cfg the control flow graph of a method
+   * @param order the order in which to process the blocks of {@code cfg}
+   * @param owningParameters the initial defs for the owning parameters of the method
+   */
+  private void checkSlices(ControlFlowGraph cfg, BlockOrder order, BitSet owningParameters) {
+    Set<Node> mustCallAllocations = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<Node> otherAllocations = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Block block : cfg.getAllBlocks()) {
+      for (Node node : block.getNodes()) {
+        if ((node instanceof MethodInvocationNode || node instanceof ObjectCreationNode)
+            && typeFactory.getTempVarForTree(node) != null) {
+          if (mayHaveMustCallObligation(node)) {
+            mustCallAllocations.add(node);
+          } else {
+            otherAllocations.add(node);
+          }
+        }
+      }
+    }
+
+    Map<MethodInvocationNode, Set<JavaExpression>> resetTargets = null;
+    Map<AssignmentNode, MethodTree> untrackedReceivers = null;
+    List<Pair<BitSet, Set<Node>>> slices = new ArrayList<>();
+    slices.add(Pair.of(new BitSet(), otherAllocations));
+    for (int setId = owningParameters.nextSetBit(0);
+        setId >= 0;
+        setId = owningParameters.nextSetBit(setId + 1)) {
+      BitSet initialDefs = new BitSet();
+      initialDefs.set(setId);
+      slices.add(Pair.of(initialDefs, Collections.emptySet()));
+    }
+    for (Node allocation : mustCallAllocations) {
+      slices.add(Pair.of(new BitSet(), Collections.singleton(allocation)));
+    }
+
+    for (Pair<BitSet, Set<Node>> slice : slices) {
+      sliceAllocations = slice.second;
+      sliceResetTargets = new IdentityHashMap<>();
+      sliceUntrackedReceivers = new IdentityHashMap<>();
+      analyze(cfg, order, slice.first);
+      countingSlice = false;
+      if (resetTargets == null) {
+        resetTargets = sliceResetTargets;
+        untrackedReceivers = sliceUntrackedReceivers;
+      } else {
+        resetTargets.keySet().retainAll(sliceResetTargets.keySet());
+        for (Map.Entry<MethodInvocationNode, Set<JavaExpression>> entry : resetTargets.entrySet()) {
+          entry.getValue().retainAll(sliceResetTargets.get(entry.getKey()));
+        }
+        untrackedReceivers.keySet().retainAll(sliceUntrackedReceivers.keySet());
+      }
+    }
+    sliceAllocations = null;
+    sliceResetTargets = null;
+    sliceUntrackedReceivers = null;
+
+    for (Map.Entry<MethodInvocationNode, Set<JavaExpression>> entry : resetTargets.entrySet()) {
+      reportResetNotOwning(entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<AssignmentNode, MethodTree> entry : untrackedReceivers.entrySet()) {
+      checkEnclosingMethodIsCreatesObligation(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Runs the consistency analysis on the given CFG, starting with the given tracked locals.
+   *
+   * @param cfg the control flow graph of a method
+   * @param order the order in which to process the blocks of {@code cfg}
+   * @param initialDefs the tracked locals at the entry of {@code cfg}
+   */
+  private void analyze(ControlFlowGraph cfg, BlockOrder order, BitSet initialDefs) {
+    boolean countMustCall = checker.hasOption(ObjectConstructionChecker.COUNT_MUST_CALL);
+    joiningStates = checker.hasOption(ObjectConstructionChecker.MERGE_MUST_CALL_STATES);
+    StateWorklist worklist =
+        joiningStates
+            ? new JoiningStateWorklist(order, index)
+            : new PathSensitiveStateWorklist(order);
+
+    // add any owning parameters to initial set of variables to track
+    worklist.propagate(cfg.getEntryBlock(), initialDefs, null);
+
+    MustCallStats.MethodStats stats = typeFactory.methodStats;
+    long startTime = System.nanoTime();
+    long processedStates = 0;
     while (!worklist.isEmpty()) {
 
-      BlockWithLocals curBlockLocals = worklist.removeLast();
+      if (worklist instanceof PathSensitiveStateWorklist) {
+        String exceededLimit = getExceededLimit(processedStates, startTime);
+        if (exceededLimit != null) {
+          if (stats != null) {
+            stats.distinctStates += worklist.numStates;
+          }
+          worklist = ((PathSensitiveStateWorklist) worklist).toJoiningStateWorklist(index);
+          joiningStates = true;
+          if (!limitReported) {
+            reportLimitExceeded(cfg, exceededLimit);
+            limitReported = true;
+          }
+        }
+      }
+
+      BlockWithLocals curBlockLocals = worklist.next();
+      processedStates++;
+      if (countMustCall) {
+        checker.numMustCallBlockVisits++;
+      }
+      if (stats != null) {
+        stats.worklistPops++;
+        stats.maxTrackedAliasSets =
+            Math.max(stats.maxTrackedAliasSets, curBlockLocals.localSetInfo.cardinality());
+      }
       List<Node> nodes = curBlockLocals.block.getNodes();
       // defs to be tracked in successor blocks, updated by code below
-      Set<ImmutableSet<LocalVarWithTree>> newDefs =
-          new LinkedHashSet<>(curBlockLocals.localSetInfo);
+      BitSet newDefs = (BitSet) curBlockLocals.localSetInfo.clone();
+      commonVars =
+          curBlockLocals.commonVars == null ? null : (BitSet) curBlockLocals.commonVars.clone();
 
       for (Node node : nodes) {
         if (node instanceof AssignmentNode) {
@@ -140,11 +521,204 @@ class MustCallInvokedChecker {
         }
       }
 
-      handleSuccessorBlocks(visited, worklist, newDefs, curBlockLocals.block);
+      if (sparseSuccessors != null && newDefs.isEmpty()) {
+        for (Block succ : getSparseSuccessors(curBlockLocals.block)) {
+          worklist.propagate(succ, newDefs, commonVars);
+        }
+      } else {
+        handleSuccessorBlocks(worklist, newDefs, curBlockLocals.block);
+      }
+    }
+    commonVars = null;
+    if (stats != null) {
+      stats.distinctStates += worklist.numStates;
+    }
+  }
+
+  /**
+   * Returns true if the given CFG contains a node from which the consistency analysis could start
+   * tracking an obligation, or at which it checks an owning field. If this returns false and the
+   * CFG has no owning parameters, the analysis can neither report an error nor count an obligation
+   * in the CFG, so it does not need to traverse the CFG. This scan only visits each node once and
+   * only queries types, so it is much cheaper than the analysis.
+   *
+   * @param cfg the control flow graph of a method, lambda or initializer
+   * @return true if the analysis of {@code cfg} might track an obligation or check a field
+   */
+  private boolean mayCreateObligations(ControlFlowGraph cfg) {
+    for (Block block : cfg.getAllBlocks()) {
+      for (Node node : block.getNodes()) {
+        if (node instanceof MethodInvocationNode || node instanceof ObjectCreationNode) {
+          if (node instanceof MethodInvocationNode
+              && typeFactory.useAccumulationFrames()
+              && typeFactory.hasCreatesObligation((MethodInvocationNode) node)) {
+            return true;
+          }
+          if (mayHaveMustCallObligation(node)) {
+            return true;
+          }
+        } else if (node instanceof AssignmentNode
+            && isAssignmentToOwningField((AssignmentNode) node)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the blocks to which the given block passes control when no locals are tracked at its
+   * end. When no locals are tracked, a block that cannot start tracking a local (see {@link
+   * #mayStartTracking(Block)}) neither reports errors nor changes the (empty) set of tracked
+   * locals, so such blocks are skipped: the result is the set of blocks that may start tracking a
+   * local and are reachable from {@code block} through the relevant successors (see {@link
+   * #getRelevantSuccessors(Block)}) of blocks that cannot. Since nothing is tracked along the
+   * skipped paths, no regular or exceptional exit on them needs to be checked.
+   *
+   * <p>Only used if the {@link ObjectConstructionChecker#SPARSE_MUST_CALL_TRAVERSAL} option was
+   * supplied.
+   *
+   * @param block a block whose end is reached with no tracked locals
+   * @return the next blocks that may start tracking a local
+   */
+  private Set<Block> getSparseSuccessors(Block block) {
+    Set<Block> result = sparseSuccessors.get(block);
+    if (result != null) {
+      return result;
+    }
+    result = new LinkedHashSet<>();
+    Set<Block> visited = new HashSet<>();
+    Deque<Block> toVisit = new ArrayDeque<>();
+    for (Pair<Block, @Nullable TypeMirror> succAndExcType : getRelevantSuccessors(block)) {
+      toVisit.push(succAndExcType.first);
+    }
+    while (!toVisit.isEmpty()) {
+      Block succ = toVisit.pop();
+      if (!visited.add(succ)) {
+        continue;
+      }
+      if (mayStartTracking(succ)) {
+        result.add(succ);
+      } else {
+        for (Pair<Block, @Nullable TypeMirror> succAndExcType : getRelevantSuccessors(succ)) {
+          toVisit.push(succAndExcType.first);
+        }
+      }
+    }
+    sparseSuccessors.put(block, result);
+    return result;
+  }
+
+  /**
+   * Returns true if processing the given block with no tracked locals might start tracking a local
+   * or report an error: that is, if the block contains a call whose result has a temporary
+   * variable, an invocation of a {@code @CreatesObligation} method, or an assignment to an {@link
+   * Owning} field. The result is cached.
+   *
+   * @param block a block
+   * @return true if {@code block} must be processed even if no locals are tracked
+   */
+  private boolean mayStartTracking(Block block) {
+    Boolean cached = blocksThatMayStartTracking.get(block);
+    if (cached != null) {
+      return cached;
+    }
+    boolean result = false;
+    for (Node node : block.getNodes()) {
+      if (node instanceof MethodInvocationNode || node instanceof ObjectCreationNode) {
+        if (typeFactory.getTempVarForTree(node) != null
+            || (node instanceof MethodInvocationNode
+                && typeFactory.useAccumulationFrames()
+                && typeFactory.hasCreatesObligation((MethodInvocationNode) node))) {
+          result = true;
+          break;
+        }
+      } else if (node instanceof AssignmentNode
+          && isAssignmentToOwningField((AssignmentNode) node)) {
+        result = true;
+        break;
+      }
+    }
+    blocksThatMayStartTracking.put(block, result);
+    return result;
+  }
+
+  /**
+   * Returns true if the given assignment assigns an {@link Owning} field.
+   *
+   * @param node an assignment
+   * @return true if the target of {@code node} is an owning field
+   */
+  private boolean isAssignmentToOwningField(AssignmentNode node) {
+    Element lhsElement = TreeUtils.elementFromTree(node.getTarget().getTree());
+    return lhsElement != null
+        && lhsElement.getKind() == ElementKind.FIELD
+        && typeFactory.getDeclAnnotation(lhsElement, Owning.class) != null;
+  }
+
+  /**
+   * Returns true if the result of the given call might have a non-empty must-call obligation. Like
+   * {@link ObjectConstructionAnnotatedTypeFactory#getMustCallValue(List, CFStore)}, this
+   * accounts for the default must-call type of the class of the result, which is used if its
+   * temporary variable is not in the must-call store.
+   *
+   * @param node a method invocation or object creation
+   * @return true if the result of {@code node} might have to be tracked
+   */
+  private boolean mayHaveMustCallObligation(Node node) {
+    if (typeFactory.hasMustCall(node.getTree())) {
+      return true;
+    }
+    TypeMirror type = node.getType();
+    return type.getKind() == TypeKind.DECLARED
+        && !typeFactory.getMustCallValue(TypesUtils.getTypeElement(type)).isEmpty();
+  }
+
+  /**
+   * Returns a description of the limit on the path-sensitive analysis of a method that has been
+   * exceeded, if any.
+   *
+   * @param processedStates the number of states of the method processed so far
+   * @param startTime the value of {@link System#nanoTime()} when the analysis of the method started
+   * @return a description of the exceeded limit, or null if no limit has been exceeded
+   */
+  private @Nullable String getExceededLimit(long processedStates, long startTime) {
+    if (checker.mustCallStateLimit >= 0 && processedStates >= checker.mustCallStateLimit) {
+      return checker.mustCallStateLimit + " states";
     }
+    if (checker.mustCallTimeLimit >= 0
+        && System.nanoTime() - startTime >= checker.mustCallTimeLimit * 1_000_000L) {
+      return checker.mustCallTimeLimit + " ms";
+    }
+    return null;
   }
 
-  private void handleInvocation(Set<ImmutableSet<LocalVarWithTree>> defs, Node node) {
+  /**
+   * Reports that the analysis of the given CFG exceeded a limit, and therefore merged its states.
+   *
+   * @param cfg the control flow graph of a method, lambda or initializer
+   * @param exceededLimit a description of the limit that was exceeded
+   */
+  private void reportLimitExceeded(ControlFlowGraph cfg, String exceededLimit) {
+    UnderlyingAST underlyingAST = cfg.getUnderlyingAST();
+    Tree tree;
+    String name;
+    if (underlyingAST instanceof UnderlyingAST.CFGMethod) {
+      UnderlyingAST.CFGMethod cfgMethod = (UnderlyingAST.CFGMethod) underlyingAST;
+      MethodTree method = cfgMethod.getMethod();
+      tree = method;
+      name = "method " + cfgMethod.getClassTree().getSimpleName() + "#" + method.getName();
+    } else if (underlyingAST instanceof UnderlyingAST.CFGLambda) {
+      tree = ((UnderlyingAST.CFGLambda) underlyingAST).getLambdaTree();
+      name = "a lambda expression";
+    } else {
+      tree = ((UnderlyingAST.CFGStatement) underlyingAST).getCode();
+      name = "an initializer";
+    }
+    report(tree, false, "must.call.budget.exceeded", name, exceededLimit);
+  }
+
+  private void handleInvocation(BitSet defs, Node node) {
     doOwnershipTransferToParameters(defs, node);
     // Count calls to @CreatesObligation methods as creating new resources, for now.
     if (node instanceof MethodInvocationNode
@@ -172,24 +746,22 @@ class MustCallInvokedChecker {
    * @param defs current defs
    * @param node a super or this constructor invocation
    */
-  private void handleThisOrSuperConstructorMustCallAlias(
-      Set<ImmutableSet<LocalVarWithTree>> defs, Node node) {
+  private void handleThisOrSuperConstructorMustCallAlias(BitSet defs, Node node) {
     Node mcaParam = getVarOrTempVarPassedAsMustCallAliasParam(node);
     // If the MCA param is also in the def set, then remove it -
     // its obligation has been fulfilled by being passed on to the MCA constructor (because we must
     // be in a constructor body if we've encountered a this/super constructor call).
-    if (mcaParam instanceof LocalVariableNode && isVarInDefs(defs, (LocalVariableNode) mcaParam)) {
-      ImmutableSet<LocalVarWithTree> setContainingMustCallAliasParamLocal =
-          getSetContainingAssignmentTreeOfVar(defs, (LocalVariableNode) mcaParam);
-      defs.remove(setContainingMustCallAliasParamLocal);
+    if (mcaParam instanceof LocalVariableNode) {
+      removeSetsContainingVar(defs, (LocalVariableNode) mcaParam);
     }
   }
 
   /**
    * Checks that an invocation of a CreatesObligation method is valid. Such an invocation is valid
    * if one of the following conditions is true: 1) the target is an owning pointer 2) the target is
-   * tracked in newdefs 3) the method in which the invocation occurs also has an @CreatesObligation
-   * annotation, with the same target
+   * tracked in newdefs on every path that reaches the invocation (see {@link
+   * #isVarTrackedOnEveryPath}) 3) the method in which the invocation occurs also has an
+   * {@code @CreatesObligation} annotation, with the same target
    *
    * <p>If none of the above are true, this method issues a reset.not.owning error.
    *
@@ -203,37 +775,53 @@ class MustCallInvokedChecker {
    *     target of the reset method.
    * @param node a method invocation node, invoking a method with a CreatesObligation annotation
    */
-  private void checkCreatesObligationInvocation(
-      Set<ImmutableSet<LocalVarWithTree>> newDefs, MethodInvocationNode node) {
+  private void checkCreatesObligationInvocation(BitSet newDefs, MethodInvocationNode node) {
 
-    TreePath currentPath = typeFactory.getPath(node.getTree());
     Set<JavaExpression> targetExprs =
-        MustCallTransfer.getCreatesObligationExpressions(node, typeFactory, currentPath);
+        MustCallTransfer.getCreatesObligationExpressions(node, typeFactory);
     Set<JavaExpression> missing = new HashSet<>();
     for (JavaExpression target : targetExprs) {
       boolean validTarget = false;
       if (target instanceof LocalVariable) {
-        ImmutableSet<LocalVarWithTree> toRemoveSet = null;
-        ImmutableSet<LocalVarWithTree> toAddSet = null;
-        for (ImmutableSet<LocalVarWithTree> defAliasSet : newDefs) {
-          for (LocalVarWithTree localVarWithTree : defAliasSet) {
-            if (target.equals(localVarWithTree.localVar)) {
+        // the alias sets containing the target, and the singleton sets that replace them
+        BitSet toRemove = new BitSet();
+        BitSet toAdd = new BitSet();
+        Element targetElement = ((LocalVariable) target).getElement();
+        BitSet targetLocals = index.localsOf(targetElement);
+        BitSet setsWithTarget = (BitSet) index.aliasSetsOf(targetElement).clone();
+        setsWithTarget.and(newDefs);
+        for (int setId = setsWithTarget.nextSetBit(0);
+            setId >= 0;
+            setId = setsWithTarget.nextSetBit(setId + 1)) {
+          BitSet defAliasSet = index.aliasSet(setId);
+          for (int localId = defAliasSet.nextSetBit(0);
+              localId >= 0;
+              localId = defAliasSet.nextSetBit(localId + 1)) {
+            if (targetLocals.get(localId)) {
               // satisfies case 2 above. Remove all its aliases, then return below.
-              if (toRemoveSet != null) {
+              // When states are joined, each path that reaches this call may contribute its own
+              // set containing the target; otherwise, there can be at most one.
+              if (!toRemove.isEmpty() && !joiningStates) {
                 throw new BugInCF(
                     "tried to remove multiple sets containing a reset target at once");
               }
-              toRemoveSet = defAliasSet;
-              toAddSet = ImmutableSet.of(localVarWithTree);
+              toRemove.set(setId);
+              toAdd.set(index.singletonAliasSetId(localId));
             }
           }
         }
 
-        if (toRemoveSet != null) {
-          newDefs.remove(toRemoveSet);
-          newDefs.add(toAddSet);
-          // satisfies case 2
-          validTarget = true;
+        if (!toRemove.isEmpty()) {
+          // satisfies case 2, unless states are joined and the target is only tracked on some of
+          // the paths that reach this call
+          validTarget = isVarTrackedOnEveryPath(newDefs, targetElement);
+          // on each path that tracks the target, its aliases stop being tracked
+          removeAliasesFromCommonVars(newDefs, targetElement);
+          if (validTarget && commonVars != null) {
+            commonVars.set(index.variableId(targetElement));
+          }
+          newDefs.andNot(toRemove);
+          newDefs.or(toAdd);
         }
 
         Element elt = ((LocalVariable) target).getElement();
@@ -254,31 +842,16 @@ class MustCallInvokedChecker {
       }
 
       if (!validTarget) {
-        // TODO: getting this every time is inefficient if a method has many @CreatesObligation
-        // annotations,
-        //  but that should be a rare path
-        MethodTree enclosingMethod = TreePathUtil.enclosingMethod(currentPath);
+        // getting the path can be expensive, so it is only done for targets that are not valid yet
+        MethodTree enclosingMethod =
+            TreePathUtil.enclosingMethod(typeFactory.getPath(node.getTree()));
         if (enclosingMethod != null) {
-          ExecutableElement enclosingElt = TreeUtils.elementFromDeclaration(enclosingMethod);
-          MustCallAnnotatedTypeFactory mcAtf =
-              typeFactory.getTypeFactoryOfSubchecker(MustCallChecker.class);
-          List<String> enclosingCoValues =
-              ObjectConstructionVisitor.getCOValues(enclosingElt, mcAtf, typeFactory);
-          if (!enclosingCoValues.isEmpty()) {
-            for (String enclosingCoValue : enclosingCoValues) {
-              JavaExpression enclosingTarget;
-              try {
-                enclosingTarget =
-                    StringToJavaExpression.atMethodBody(enclosingCoValue, enclosingMethod, checker);
-              } catch (JavaExpressionParseException e) {
-                // TODO: or issue an unparseable error?
-                enclosingTarget = null;
-              }
-
-              if (representSame(target, enclosingTarget)) {
-                // this satisifies case 3
-                validTarget = true;
-              }
+          // An unparseable target is null, and represents nothing.
+          for (JavaExpression enclosingTarget :
+              typeFactory.getCreatesObligationTargets(enclosingMethod)) {
+            if (representSame(target, enclosingTarget)) {
+              // this satisifies case 3
+              validTarget = true;
             }
           }
         }
@@ -293,9 +866,28 @@ class MustCallInvokedChecker {
       return;
     }
 
+    if (sliceResetTargets != null) {
+      // the targets might be tracked by another slice; see checkSlices
+      sliceResetTargets.computeIfAbsent(node, n -> new LinkedHashSet<>()).addAll(missing);
+      return;
+    }
+    reportResetNotOwning(node, missing);
+  }
+
+  /**
+   * Reports that an invocation of a {@code @CreatesObligation} method resets the obligations of
+   * targets that are neither tracked nor owning.
+   *
+   * @param node an invocation of a {@code @CreatesObligation} method
+   * @param missing the invalid targets of {@code node}; nothing is reported if it is empty
+   */
+  private void reportResetNotOwning(MethodInvocationNode node, Set<JavaExpression> missing) {
+    if (missing.isEmpty()) {
+      return;
+    }
     String missingStrs =
         missing.stream().map(JavaExpression::toString).collect(Collectors.joining(", "));
-    checker.reportError(node.getTree(), "reset.not.owning", missingStrs);
+    reportError(node.getTree(), "reset.not.owning", missingStrs);
   }
 
   /**
@@ -325,13 +917,12 @@ class MustCallInvokedChecker {
    * ownership of the result. Searches for the set of same resources in defs and add the new
    * LocalVarWithTree to it if one exists. Otherwise creates a new set.
    */
-  private void updateDefsWithTempVar(Set<ImmutableSet<LocalVarWithTree>> defs, Node node) {
+  private void updateDefsWithTempVar(BitSet defs, Node node) {
     Tree tree = node.getTree();
     LocalVariableNode temporaryLocal = typeFactory.getTempVarForTree(node);
     if (temporaryLocal != null) {
 
-      LocalVarWithTree lhsLocalVarWithTreeNew =
-          new LocalVarWithTree(new LocalVariable(temporaryLocal), tree);
+      int lhsLocalVarWithTreeNew = index.localId(temporaryLocal, tree);
 
       Node sameResource = null;
       // Set sameResource to the MCA parameter if any exists, otherwise it remains null
@@ -357,21 +948,39 @@ class MustCallInvokedChecker {
       // containing sameResource. Otherwise, add it to a new set
       if (sameResource instanceof LocalVariableNode
           && isVarInDefs(defs, (LocalVariableNode) sameResource)) {
-        ImmutableSet<LocalVarWithTree> setContainingMustCallAliasParamLocal =
-            getSetContainingAssignmentTreeOfVar(defs, (LocalVariableNode) sameResource);
-        ImmutableSet<LocalVarWithTree> newSetContainingMustCallAliasParamLocal =
-            FluentIterable.from(setContainingMustCallAliasParamLocal)
-                .append(lhsLocalVarWithTreeNew)
-                .toSet();
-        defs.remove(setContainingMustCallAliasParamLocal);
-        defs.add(newSetContainingMustCallAliasParamLocal);
+        BitSet setsContainingMustCallAliasParamLocal =
+            getSetsContainingAssignmentTreeOfVar(defs, (LocalVariableNode) sameResource);
+        BitSet newSetsContainingMustCallAliasParamLocal = new BitSet();
+        for (int setId = setsContainingMustCallAliasParamLocal.nextSetBit(0);
+            setId >= 0;
+            setId = setsContainingMustCallAliasParamLocal.nextSetBit(setId + 1)) {
+          BitSet newSet = (BitSet) index.aliasSet(setId).clone();
+          newSet.set(lhsLocalVarWithTreeNew);
+          newSetsContainingMustCallAliasParamLocal.set(index.aliasSetId(newSet, setId));
+        }
+        defs.andNot(setsContainingMustCallAliasParamLocal);
+        defs.or(newSetsContainingMustCallAliasParamLocal);
+        if (isVarTrackedOnEveryPath(defs, ((LocalVariableNode) sameResource).getElement())) {
+          if (commonVars != null) {
+            commonVars.set(index.variableId(temporaryLocal.getElement()));
+          }
+        } else {
+          // The joined state tracks sameResource only on some of the paths that reach this call,
+          // and the result only aliases a tracked resource on those, so the result is also
+          // tracked on its own rather than relying on an alias that not every path has.
+          defs.set(index.singletonAliasSetId(lhsLocalVarWithTreeNew));
+        }
       } else if (!(sameResource instanceof LocalVariableNode
-          || sameResource instanceof FieldAccessNode)) {
+              || sameResource instanceof FieldAccessNode)
+          && (sliceAllocations == null || sliceAllocations.contains(node))) {
         // we do not track the temp var for the call if the MustCallAlias parameter is a local (that
         // case is handled above; the local must already be in the defs) or a field (handling of
         // @Owning fields is a completely separate check, and we never need to track an alias of
-        // non-@Owning fields)
-        defs.add(ImmutableSet.of(lhsLocalVarWithTreeNew));
+        // non-@Owning fields). When slicing, only the calls of the current slice are tracked.
+        defs.set(index.singletonAliasSetId(lhsLocalVarWithTreeNew));
+        if (commonVars != null) {
+          commonVars.set(index.variableId(temporaryLocal.getElement()));
+        }
       }
     }
   }
@@ -383,7 +992,7 @@ class MustCallInvokedChecker {
    * or when the method's return type is non-owning, which can either be because the method has no
    * return type or because it is annotated with {@link NotOwning}.
    */
-  private boolean shouldSkipInvokeCheck(Set<ImmutableSet<LocalVarWithTree>> defs, Node node) {
+  private boolean shouldSkipInvokeCheck(BitSet defs, Node node) {
     Tree callTree = node.getTree();
     if (callTree.getKind() == Tree.Kind.METHOD_INVOCATION) {
       MethodInvocationTree methodInvokeTree = (MethodInvocationTree) callTree;
@@ -447,9 +1056,13 @@ class MustCallInvokedChecker {
   /**
    * logic to transfer ownership of locals to {@code @Owning} parameters at a method or constructor
    * call
+   *
+   * <p>Ownership is also transferred to a parameter that the callee closes according to the
+   * {@link OwnershipSummaries} read from a previous compilation, if the {@link
+   * ObjectConstructionChecker#OWNERSHIP_SUMMARIES} option is supplied. Otherwise, this consults
+   * only the declaration of the callee, never its body.
    */
-  private void doOwnershipTransferToParameters(
-      Set<ImmutableSet<LocalVarWithTree>> newDefs, Node node) {
+  private void doOwnershipTransferToParameters(BitSet newDefs, Node node) {
 
     if (checker.hasOption(MustCallChecker.NO_LIGHTWEIGHT_OWNERSHIP)) {
       // never transfer ownership to parameters, matching ECJ's default
@@ -487,22 +1100,26 @@ class MustCallInvokedChecker {
                     AnnotationUtils.areSameByName(
                         anno, "org.checkerframework.checker.objectconstruction.qual.Owning"))) {
           // transfer ownership!
-          newDefs.remove(getSetContainingAssignmentTreeOfVar(newDefs, local));
+          removeSetsContainingVar(newDefs, local);
+        } else if (checker.ownershipSummaries != null
+            && checker.ownershipSummaries.closesParameter(
+                (ExecutableElement) formal.getEnclosingElement(), i)) {
+          // a previous compilation found that the callee closes this parameter
+          removeSetsContainingVar(newDefs, local);
         }
       }
     }
   }
 
-  private void handleReturn(
-      ReturnNode node, ControlFlowGraph cfg, Set<ImmutableSet<LocalVarWithTree>> newDefs) {
+  private void handleReturn(ReturnNode node, ControlFlowGraph cfg, BitSet newDefs) {
     if (isTransferOwnershipAtReturn(cfg)) {
       Node result = node.getResult();
       Node temp = typeFactory.getTempVarForTree(result);
       if (temp != null) {
         result = temp;
       }
-      if (result instanceof LocalVariableNode && isVarInDefs(newDefs, (LocalVariableNode) result)) {
-        newDefs.remove(getSetContainingAssignmentTreeOfVar(newDefs, (LocalVariableNode) result));
+      if (result instanceof LocalVariableNode) {
+        removeSetsContainingVar(newDefs, (LocalVariableNode) result);
       }
     }
   }
@@ -531,7 +1148,7 @@ class MustCallInvokedChecker {
     return false;
   }
 
-  private void handleAssignment(AssignmentNode node, Set<ImmutableSet<LocalVarWithTree>> newDefs) {
+  private void handleAssignment(AssignmentNode node, BitSet newDefs) {
     Node rhs = removeCasts(node.getExpression());
     if (typeFactory.getTempVarForTree(rhs) != null) {
       rhs = typeFactory.getTempVarForTree(rhs);
@@ -546,8 +1163,7 @@ class MustCallInvokedChecker {
     return node;
   }
 
-  private void handleAssignFromRHS(
-      AssignmentNode node, Set<ImmutableSet<LocalVarWithTree>> newDefs, Node rhs) {
+  private void handleAssignFromRHS(AssignmentNode node, BitSet newDefs, Node rhs) {
     Node lhs = node.getTarget();
     Element lhsElement = TreeUtils.elementFromTree(lhs.getTree());
 
@@ -568,9 +1184,7 @@ class MustCallInvokedChecker {
           && rhs instanceof LocalVariableNode
           && isVarInDefs(newDefs, (LocalVariableNode) rhs)
           && (typeFactory.useAccumulationFrames() || ElementUtils.isFinal(lhsElement))) {
-        Set<LocalVarWithTree> setContainingRhs =
-            getSetContainingAssignmentTreeOfVar(newDefs, (LocalVariableNode) rhs);
-        newDefs.remove(setContainingRhs);
+        removeSetsContainingVar(newDefs, (LocalVariableNode) rhs);
       }
     } else if (lhs instanceof LocalVariableNode) {
       LocalVariableNode lhsVar = (LocalVariableNode) lhs;
@@ -579,9 +1193,7 @@ class MustCallInvokedChecker {
         // assigned to the variable will be closed.  So, if the RHS is a tracked variable, remove
         // its set from the defs
         if (rhs instanceof LocalVariableNode) {
-          Set<LocalVarWithTree> setContainingRhs =
-              getSetContainingAssignmentTreeOfVar(newDefs, (LocalVariableNode) rhs);
-          newDefs.remove(setContainingRhs);
+          removeSetsContainingVar(newDefs, (LocalVariableNode) rhs);
         }
       } else {
         doGenKillForPseudoAssignment(node, newDefs, lhsVar, rhs);
@@ -602,74 +1214,75 @@ class MustCallInvokedChecker {
    * @param rhs the right-hand side for the pseudo-assignment
    */
   private void doGenKillForPseudoAssignment(
-      Node node, Set<ImmutableSet<LocalVarWithTree>> defs, LocalVariableNode lhsVar, Node rhs) {
-    // Replacements to eventually perform in defs.  We keep this map to avoid a
-    // ConcurrentModificationException in the loop below
-    Map<ImmutableSet<LocalVarWithTree>, ImmutableSet<LocalVarWithTree>> replacements =
-        new LinkedHashMap<>();
-    // construct this once outside the loop for efficiency
-    LocalVarWithTree lhsVarWithTreeToGen =
-        new LocalVarWithTree(new LocalVariable(lhsVar), node.getTree());
-    for (ImmutableSet<LocalVarWithTree> varWithTreeSet : defs) {
-      Set<LocalVarWithTree> kill = new LinkedHashSet<>();
-      // always kill the lhs var if present
-      addLocalVarWithTreeToSetIfPresent(varWithTreeSet, lhsVar.getElement(), kill);
-      LocalVarWithTree gen = null;
-      // if rhs is a variable tracked in the set, gen the lhs
-      if (rhs instanceof LocalVariableNode) {
-        LocalVariableNode rhsVar = (LocalVariableNode) rhs;
-        if (varWithTreeSet.stream()
-            .anyMatch(lvwt -> lvwt.localVar.getElement().equals(rhsVar.getElement()))) {
-          gen = lhsVarWithTreeToGen;
-          // we remove temp vars from tracking once they are assigned elsewhere
-          if (typeFactory.isTempVar(rhsVar)) {
-            addLocalVarWithTreeToSetIfPresent(varWithTreeSet, rhsVar.getElement(), kill);
-          }
-        }
+      Node node, BitSet defs, LocalVariableNode lhsVar, Node rhs) {
+    // always kill the lhs var if present
+    BitSet lhsLocals = index.localsOf(lhsVar.getElement());
+    // if rhs is a variable tracked in a set, gen the lhs
+    BitSet rhsLocals =
+        rhs instanceof LocalVariableNode
+            ? index.localsOf(((LocalVariableNode) rhs).getElement())
+            : new BitSet(0);
+    // only the tracked sets that contain the lhs or the rhs need to be updated
+    BitSet affectedSets = (BitSet) index.aliasSetsOf(lhsVar.getElement()).clone();
+    if (rhs instanceof LocalVariableNode) {
+      affectedSets.or(index.aliasSetsOf(((LocalVariableNode) rhs).getElement()));
+    }
+    affectedSets.and(defs);
+    // we remove temp vars from tracking once they are assigned elsewhere
+    boolean killRhs = typeFactory.isTempVar(rhs);
+    if (commonVars != null) {
+      // on each path, the lhs is tracked afterwards if and only if the rhs was tracked before
+      boolean rhsTracked =
+          rhs instanceof LocalVariableNode
+              && commonVars.get(index.variableId(((LocalVariableNode) rhs).getElement()));
+      commonVars.clear(index.variableId(lhsVar.getElement()));
+      if (killRhs && rhs instanceof LocalVariableNode) {
+        commonVars.clear(index.variableId(((LocalVariableNode) rhs).getElement()));
       }
-      // check if there is something to do before creating a new set, for efficiency
-      if (kill.isEmpty() && gen == null) {
-        continue;
+      if (rhsTracked) {
+        commonVars.set(index.variableId(lhsVar.getElement()));
       }
-      Set<LocalVarWithTree> newVarWithTreeSet = new LinkedHashSet<>(varWithTreeSet);
-      newVarWithTreeSet.removeAll(kill);
-      if (gen != null) {
-        newVarWithTreeSet.add(gen);
+    }
+    // Replacements to eventually perform in defs.  We keep these separately so that the loop
+    // below does not visit the new sets.
+    BitSet killedSets = new BitSet();
+    BitSet genSets = new BitSet();
+    // the index of the lhs local to gen; only computed if needed, for efficiency
+    int lhsVarWithTreeToGen = -1;
+    for (int setId = affectedSets.nextSetBit(0);
+        setId >= 0;
+        setId = affectedSets.nextSetBit(setId + 1)) {
+      BitSet varWithTreeSet = index.aliasSet(setId);
+      boolean kill = varWithTreeSet.intersects(lhsLocals);
+      boolean gen = varWithTreeSet.intersects(rhsLocals);
+      BitSet newVarWithTreeSet = (BitSet) varWithTreeSet.clone();
+      newVarWithTreeSet.andNot(lhsLocals);
+      if (gen) {
+        if (killRhs) {
+          newVarWithTreeSet.andNot(rhsLocals);
+        }
+        if (lhsVarWithTreeToGen < 0) {
+          lhsVarWithTreeToGen = index.localId(lhsVar, node.getTree());
+        }
+        newVarWithTreeSet.set(lhsVarWithTreeToGen);
       }
-      if (newVarWithTreeSet.size() == 0) {
+      killedSets.set(setId);
+      if (newVarWithTreeSet.isEmpty()) {
         // we have killed the last reference to the resource; check the must-call obligation
         MustCallAnnotatedTypeFactory mcAtf =
             typeFactory.getTypeFactoryOfSubchecker(MustCallChecker.class);
         checkMustCall(
-            varWithTreeSet,
+            setId,
             typeFactory.getStoreBefore(node),
             mcAtf.getStoreBefore(node),
             "variable overwritten by assignment " + node.getTree());
+      } else {
+        genSets.set(index.aliasSetId(newVarWithTreeSet, setId));
       }
-      replacements.put(varWithTreeSet, ImmutableSet.copyOf(newVarWithTreeSet));
     }
     // finally, update defs according to the replacements
-    for (Map.Entry<ImmutableSet<LocalVarWithTree>, ImmutableSet<LocalVarWithTree>> entry :
-        replacements.entrySet()) {
-      defs.remove(entry.getKey());
-      if (!entry.getValue().isEmpty()) {
-        defs.add(entry.getValue());
-      }
-    }
-  }
-
-  /**
-   * If a {@link LocalVarWithTree} is present in {@code varWithTreeSet} whose variable element is
-   * {@code element}, add it to {@code lvwtSet}
-   */
-  private void addLocalVarWithTreeToSetIfPresent(
-      ImmutableSet<LocalVarWithTree> varWithTreeSet,
-      Element element,
-      Set<LocalVarWithTree> lvwtSet) {
-    varWithTreeSet.stream()
-        .filter(lvwt -> lvwt.localVar.getElement().equals(element))
-        .findFirst()
-        .ifPresent(lvwtSet::add);
+    defs.andNot(killedSets);
+    defs.or(genSets);
   }
 
   /**
@@ -678,10 +1291,9 @@ class MustCallInvokedChecker {
    * satisfies the must-call obligations.
    *
    * @param node an assignment to a non-final, owning field
-   * @param newDefs
+   * @param newDefs the tracked definitions
    */
-  private void checkReassignmentToField(
-      AssignmentNode node, Set<ImmutableSet<LocalVarWithTree>> newDefs) {
+  private void checkReassignmentToField(AssignmentNode node, BitSet newDefs) {
 
     Node lhsNode = node.getTarget();
 
@@ -714,9 +1326,14 @@ class MustCallInvokedChecker {
     // 1) an assignment to a field of a newly-declared local variable that can't be in scope
     // for the containing method, or 2) the rhs is a null literal (so there's nothing to reset).
     if (!(receiver instanceof LocalVariableNode
-            && isVarInDefs(newDefs, (LocalVariableNode) receiver))
+            && isVarTrackedOnEveryPath(newDefs, ((LocalVariableNode) receiver).getElement()))
         && !(node.getExpression() instanceof NullLiteralNode)) {
-      checkEnclosingMethodIsCreatesObligation(node, enclosingMethod);
+      if (sliceUntrackedReceivers != null) {
+        // the receiver might be tracked by another slice; see checkSlices
+        sliceUntrackedReceivers.put(node, enclosingMethod);
+      } else {
+        checkEnclosingMethodIsCreatesObligation(node, enclosingMethod);
+      }
     }
 
     MustCallAnnotatedTypeFactory mcTypeFactory =
@@ -749,10 +1366,10 @@ class MustCallInvokedChecker {
                 .findAny()
                 .orElse(typeFactory.top);
 
-    if (!calledMethodsSatisfyMustCall(mcValues, cmAnno)) {
+    if (!typeFactory.calledMethodsSatisfyMustCall(mcValues, cmAnno)) {
       Element lhsElement = TreeUtils.elementFromTree(lhs.getTree());
       if (!checker.shouldSkipUses(lhsElement)) {
-        checker.reportError(
+        reportError(
             node.getTree(),
             "required.method.not.called",
             formatMissingMustCallMethods(mcValues),
@@ -782,13 +1399,12 @@ class MustCallInvokedChecker {
       return;
     }
     ExecutableElement enclosingElt = TreeUtils.elementFromDeclaration(enclosingMethod);
-    MustCallAnnotatedTypeFactory mcAtf =
-        typeFactory.getTypeFactoryOfSubchecker(MustCallChecker.class);
-
-    List<String> coValues = ObjectConstructionVisitor.getCOValues(enclosingElt, mcAtf, typeFactory);
+    List<String> coValues = typeFactory.getCreatesObligationInfo(enclosingElt).getTargets();
+    List<@Nullable JavaExpression> coTargets =
+        typeFactory.getCreatesObligationTargets(enclosingMethod);
 
     if (coValues.isEmpty()) {
-      checker.reportError(
+      reportError(
           enclosingMethod,
           "missing.creates.obligation",
           receiverString,
@@ -797,16 +1413,9 @@ class MustCallInvokedChecker {
     }
 
     String checked = "";
-    for (String targetStrWithoutAdaptation : coValues) {
-      String targetStr = null;
-      try {
-        targetStr =
-            StringToJavaExpression.atMethodBody(
-                    targetStrWithoutAdaptation, enclosingMethod, checker)
-                .toString();
-      } catch (JavaExpressionParseException e) {
-        targetStr = targetStrWithoutAdaptation;
-      }
+    for (int i = 0; i < coValues.size(); i++) {
+      JavaExpression coTarget = coTargets.get(i);
+      String targetStr = coTarget != null ? coTarget.toString() : coValues.get(i);
       if (targetStr.equals(receiverString)) {
         // This create obligation annotation matches.
         return;
@@ -817,7 +1426,7 @@ class MustCallInvokedChecker {
         checked += ", " + targetStr;
       }
     }
-    checker.reportError(
+    reportError(
         enclosingMethod,
         "incompatible.creates.obligation",
         receiverString,
@@ -926,52 +1535,63 @@ class MustCallInvokedChecker {
   }
 
   /**
-   * get all successor blocks for some block, except for those corresponding to ignored exceptions
+   * get all successor blocks for some block, except for those corresponding to ignored exceptions.
+   * If several relevant exception types lead to the same successor block, only the first of them is
+   * kept, so that each edge is processed once. The result is cached for each block.
    *
    * @param block input block
-   * @return set of pairs (b, t), where b is a relevant successor block, and t is the type of
+   * @return list of pairs (b, t), where b is a relevant successor block, and t is the type of
    *     exception for the CFG edge from block to b, or {@code null} if b is a non-exceptional
    *     successor
    */
-  private Set<Pair<Block, @Nullable TypeMirror>> getRelevantSuccessors(Block block) {
+  private List<Pair<Block, @Nullable TypeMirror>> getRelevantSuccessors(Block block) {
+    List<Pair<Block, @Nullable TypeMirror>> result = relevantSuccessors.get(block);
+    if (result != null) {
+      return result;
+    }
+    result = new ArrayList<>();
     if (block.getType() == Block.BlockType.EXCEPTION_BLOCK) {
       ExceptionBlock excBlock = (ExceptionBlock) block;
-      Set<Pair<Block, @Nullable TypeMirror>> result = new LinkedHashSet<>();
       // regular successor
       Block regularSucc = excBlock.getSuccessor();
       if (regularSucc != null) {
         result.add(Pair.of(regularSucc, null));
       }
-      // relevant exception successors
+      // relevant exception successors, each with the first exception type that leads to it
+      Set<Block> exceptionalSuccs = new HashSet<>();
       Map<TypeMirror, Set<Block>> exceptionalSuccessors = excBlock.getExceptionalSuccessors();
       for (Map.Entry<TypeMirror, Set<Block>> entry : exceptionalSuccessors.entrySet()) {
         TypeMirror exceptionType = entry.getKey();
-        if (!isIgnoredExceptionType(((Type) exceptionType).tsym.getQualifiedName())) {
+        if (!typeFactory.isIgnoredExceptionType(exceptionType)) {
           for (Block exSucc : entry.getValue()) {
-            result.add(Pair.of(exSucc, exceptionType));
+            if (exceptionalSuccs.add(exSucc)) {
+              result.add(Pair.of(exSucc, exceptionType));
+            }
           }
         }
       }
-      return result;
     } else {
-      return block.getSuccessors().stream()
-          .map(b -> Pair.<Block, TypeMirror>of(b, null))
-          .collect(Collectors.toSet());
+      for (Block succ : block.getSuccessors()) {
+        result.add(Pair.of(succ, null));
+      }
     }
+    relevantSuccessors.put(block, result);
+    return result;
   }
 
-  private void handleSuccessorBlocks(
-      Set<BlockWithLocals> visited,
-      Deque<BlockWithLocals> worklist,
-      Set<ImmutableSet<LocalVarWithTree>> defs,
-      Block block) {
+  private void handleSuccessorBlocks(StateWorklist worklist, BitSet defs, Block block) {
     List<Node> nodes = block.getNodes();
+    // the variables tracked on every path at the end of the block, if states are joined
+    BitSet blockCommonVars = commonVars;
     for (Pair<Block, @Nullable TypeMirror> succAndExcType : getRelevantSuccessors(block)) {
       Block succ = succAndExcType.first;
       TypeMirror exceptionType = succAndExcType.second;
-      Set<ImmutableSet<LocalVarWithTree>> defsToUse = handleTernarySucc(block, succ, defs);
-      Set<ImmutableSet<LocalVarWithTree>> defsCopy = new LinkedHashSet<>(defsToUse);
-      Set<ImmutableSet<LocalVarWithTree>> toRemove = new LinkedHashSet<>();
+      commonVars = blockCommonVars == null ? null : (BitSet) blockCommonVars.clone();
+      BitSet defsToUse = handleTernarySucc(block, succ, defs);
+      BitSet defsCopy = (BitSet) defsToUse.clone();
+      BitSet toRemove = new BitSet();
+      // the locals that stop being tracked on some path, whatever their alias sets
+      BitSet untrackedLocals = new BitSet();
       String reasonForSucc =
           exceptionType == null
               ?
@@ -983,11 +1603,22 @@ class MustCallInvokedChecker {
                   + " with exception type "
                   + exceptionType.toString();
       CFStore succRegularStore = analysis.getInput(succ).getRegularStore();
-      for (ImmutableSet<LocalVarWithTree> setAssign : defsToUse) {
+      for (int setId = defsToUse.nextSetBit(0);
+          setId >= 0;
+          setId = defsToUse.nextSetBit(setId + 1)) {
+        BitSet setAssign = index.aliasSet(setId);
+        // the locals of setAssign that are going out of scope
+        BitSet notPresent = new BitSet();
+        for (int localId = setAssign.nextSetBit(0);
+            localId >= 0;
+            localId = setAssign.nextSetBit(localId + 1)) {
+          if (varNotPresentInStoreAndNotForTernary(succRegularStore, index.local(localId))) {
+            notPresent.set(localId);
+          }
+        }
+        untrackedLocals.or(notPresent);
         // If the successor block is the exit block or if the variable is going out of scope
-        boolean noSuccInfo =
-            setAssign.stream()
-                .allMatch(assign -> varNotPresentInStoreAndNotForTernary(succRegularStore, assign));
+        boolean noSuccInfo = notPresent.equals(setAssign);
         if (succ instanceof SpecialBlockImpl || noSuccInfo) {
           MustCallAnnotatedTypeFactory mcAtf =
               typeFactory.getTypeFactoryOfSubchecker(MustCallChecker.class);
@@ -998,16 +1629,17 @@ class MustCallInvokedChecker {
             Node exceptionalNode = removeCasts(((ExceptionBlock) block).getNode());
             LocalVariableNode localVariable = typeFactory.getTempVarForTree(exceptionalNode);
             if (localVariable != null
-                && setAssign.stream()
-                    .allMatch(
-                        local -> local.localVar.getElement().equals(localVariable.getElement()))) {
-              toRemove.add(setAssign);
-              break;
+                && isSubset(setAssign, index.localsOf(localVariable.getElement()))) {
+              toRemove.set(setId);
+              untrackedLocals.or(setAssign);
+              // The other sets are still checked, so that the result does not depend on the
+              // order of the sets, and each slice of checkSlices reports what this loop reports.
+              continue;
             }
           }
 
           if (nodes.size() == 1 && nestedInCastOrTernary(block.getNodes().get(0))) {
-            break;
+            continue;
           }
 
           if (nodes.size() == 0) { // If the cur block is special or conditional block
@@ -1022,7 +1654,7 @@ class MustCallInvokedChecker {
             CFStore cmStore =
                 noSuccInfo ? analysis.getInput(block).getRegularStore() : succRegularStore;
             CFStore mcStore = mcAtf.getStoreForBlock(noSuccInfo, block, succ);
-            checkMustCall(setAssign, cmStore, mcStore, reasonForSucc);
+            checkMustCall(setId, cmStore, mcStore, reasonForSucc);
           } else { // If the cur block is Exception/Regular block then it checks MustCall
             // annotation in the store right after the last node
             Node last = nodes.get(nodes.size() - 1);
@@ -1036,23 +1668,30 @@ class MustCallInvokedChecker {
             } else {
               mcStore = mcAtf.getStoreAfter(last);
             }
-            checkMustCall(setAssign, cmStoreAfter, mcStore, reasonForSucc);
+            checkMustCall(setId, cmStoreAfter, mcStore, reasonForSucc);
           }
 
-          toRemove.add(setAssign);
-        } else {
+          toRemove.set(setId);
+        } else if (!notPresent.isEmpty()) {
           // handling the case where some vars go out of scope in the set
-          Set<LocalVarWithTree> setAssignCopy = new LinkedHashSet<>(setAssign);
-          setAssignCopy.removeIf(
-              assign -> varNotPresentInStoreAndNotForTernary(succRegularStore, assign));
-          defsCopy.remove(setAssign);
-          defsCopy.add(ImmutableSet.copyOf(setAssignCopy));
+          BitSet setAssignCopy = (BitSet) setAssign.clone();
+          setAssignCopy.andNot(notPresent);
+          defsCopy.clear(setId);
+          defsCopy.set(index.aliasSetId(setAssignCopy, setId));
         }
       }
 
-      defsCopy.removeAll(toRemove);
-      propagate(new BlockWithLocals(succ, defsCopy), visited, worklist);
+      defsCopy.andNot(toRemove);
+      if (commonVars != null) {
+        for (int localId = untrackedLocals.nextSetBit(0);
+            localId >= 0;
+            localId = untrackedLocals.nextSetBit(localId + 1)) {
+          commonVars.clear(index.variableId(index.local(localId).localVar.getElement()));
+        }
+      }
+      worklist.propagate(succ, defsCopy, commonVars);
     }
+    commonVars = blockCommonVars;
   }
 
   /**
@@ -1060,7 +1699,7 @@ class MustCallInvokedChecker {
    * is not a {@link ConditionalExpressionTree}. The check for a {@link ConditionalExpressionTree}
    * is to accommodate our handling of ternary expressions, where we track the temporary variable
    * for the expression at the program point before that expression; see {@link
-   * #handleTernarySucc(Block, Block, Set)}.
+   * #handleTernarySucc(Block, Block, BitSet)}.
    */
   private boolean varNotPresentInStoreAndNotForTernary(CFStore store, LocalVarWithTree assign) {
     return store.getValue(assign.localVar) == null
@@ -1090,8 +1729,7 @@ class MustCallInvokedChecker {
    * @return a new set of defs to account for the {@link TernaryExpressionNode}, or just {@code
    *     defs} if no handling is required.
    */
-  private Set<ImmutableSet<LocalVarWithTree>> handleTernarySucc(
-      Block pred, Block succ, Set<ImmutableSet<LocalVarWithTree>> defs) {
+  private BitSet handleTernarySucc(Block pred, Block succ, BitSet defs) {
     List<Node> succNodes = succ.getNodes();
     if (succNodes.isEmpty() || !(succNodes.get(0) instanceof TernaryExpressionNode)) {
       return defs;
@@ -1110,7 +1748,7 @@ class MustCallInvokedChecker {
         return defs;
       }
     }
-    Set<ImmutableSet<LocalVarWithTree>> newDefs = new LinkedHashSet<>(defs);
+    BitSet newDefs = (BitSet) defs.clone();
     doGenKillForPseudoAssignment(ternaryNode, newDefs, ternaryTempVar, rhs);
     return newDefs;
   }
@@ -1133,10 +1771,10 @@ class MustCallInvokedChecker {
    * Finds {@link Owning} formal parameters for the method corresponding to a CFG
    *
    * @param cfg the CFG
-   * @return
+   * @return the initial defs, containing a singleton alias set for each owning parameter
    */
-  private Set<ImmutableSet<LocalVarWithTree>> computeOwningParameters(ControlFlowGraph cfg) {
-    Set<ImmutableSet<LocalVarWithTree>> init = new LinkedHashSet<>();
+  private BitSet computeOwningParameters(ControlFlowGraph cfg) {
+    BitSet init = new BitSet();
     UnderlyingAST underlyingAST = cfg.getUnderlyingAST();
     if (underlyingAST instanceof UnderlyingAST.CFGMethod) {
       // TODO what about lambdas?
@@ -1148,9 +1786,8 @@ class MustCallInvokedChecker {
             || (typeFactory.hasMustCall(param)
                 && !checker.hasOption(MustCallChecker.NO_LIGHTWEIGHT_OWNERSHIP)
                 && paramElement.getAnnotation(Owning.class) != null)) {
-          Set<LocalVarWithTree> setOfLocals = new LinkedHashSet<>();
-          setOfLocals.add(new LocalVarWithTree(new LocalVariable(paramElement), param));
-          init.add(ImmutableSet.copyOf(setOfLocals));
+          int paramLocal = index.localId(paramElement, param);
+          init.set(index.singletonAliasSetId(paramLocal));
           // Increment numMustCall for each @Owning parameter tracked by the enclosing method
           incrementNumMustCall(paramElement);
         }
@@ -1163,36 +1800,67 @@ class MustCallInvokedChecker {
    * Checks whether a pair exists in {@code defs} that its first var is equal to {@code node} or
    * not. This is useful when we want to check if a LocalVariableNode is overwritten or not.
    */
-  private static boolean isVarInDefs(
-      Set<ImmutableSet<LocalVarWithTree>> defs, LocalVariableNode node) {
-    return defs.stream()
-        .flatMap(Set::stream)
-        .map(assign -> ((assign.localVar).getElement()))
-        .anyMatch(elem -> elem.equals(node.getElement()));
+  private boolean isVarInDefs(BitSet defs, LocalVariableNode node) {
+    return defs.intersects(index.aliasSetsOf(node.getElement()));
   }
 
-  private static ImmutableSet<LocalVarWithTree> getSetContainingAssignmentTreeOfVar(
-      Set<ImmutableSet<LocalVarWithTree>> defs, LocalVariableNode node) {
-    return defs.stream()
-        .filter(
-            set ->
-                set.stream()
-                    .anyMatch(assign -> assign.localVar.getElement().equals(node.getElement())))
-        .findAny()
-        .orElse(null);
+  /**
+   * Returns the indices of the sets in {@code defs} that contain a pair whose first var is equal to
+   * {@code node}. Unless states are being joined (see {@link JoiningStateWorklist}), there is at
+   * most one such set.
+   */
+  private BitSet getSetsContainingAssignmentTreeOfVar(BitSet defs, LocalVariableNode node) {
+    BitSet result = (BitSet) index.aliasSetsOf(node.getElement()).clone();
+    result.and(defs);
+    return result;
+  }
+
+  /**
+   * Removes every set in {@code defs} that contains a pair whose first var is equal to {@code
+   * node}, i.e., stops tracking the resource(s) that {@code node} refers to.
+   */
+  private void removeSetsContainingVar(BitSet defs, LocalVariableNode node) {
+    removeAliasesFromCommonVars(defs, node.getElement());
+    defs.andNot(index.aliasSetsOf(node.getElement()));
+  }
+
+  /**
+   * Returns true if the given variable is tracked on every path that reaches the current node: if
+   * {@code defs} tracks it, or, while states are joined, if it is in {@link #commonVars}.
+   *
+   * @param defs the tracked definitions
+   * @param var a variable element
+   * @return true if {@code var} is tracked on every path to the current node
+   */
+  private boolean isVarTrackedOnEveryPath(BitSet defs, Element var) {
+    return commonVars == null
+        ? defs.intersects(index.aliasSetsOf(var))
+        : commonVars.get(index.variableId(var));
   }
 
   /**
-   * Returns a pair in {@code defs} that its first var is equal to {@code node} if one exists, null
-   * otherwise.
+   * While states are joined, removes from {@link #commonVars} the given variable and every variable
+   * that shares an alias set in {@code defs} with it. Since the sets of a joined state come from
+   * different paths, any of these variables may stop being tracked on some path when the sets that
+   * contain {@code var} are removed or replaced.
+   *
+   * @param defs the tracked definitions, before the sets that contain {@code var} are updated
+   * @param var a variable element
    */
-  private static LocalVarWithTree getAssignmentTreeOfVar(
-      Set<ImmutableSet<LocalVarWithTree>> defs, LocalVariableNode node) {
-    return defs.stream()
-        .flatMap(Set::stream)
-        .filter(assign -> assign.localVar.getElement().equals(node.getElement()))
-        .findAny()
-        .orElse(null);
+  private void removeAliasesFromCommonVars(BitSet defs, Element var) {
+    if (commonVars != null) {
+      BitSet setsWithVar = (BitSet) index.aliasSetsOf(var).clone();
+      setsWithVar.and(defs);
+      commonVars.andNot(index.variablesOf(setsWithVar));
+      commonVars.clear(index.variableId(var));
+    }
+  }
+
+  /** Returns true if every element of {@code subset} is also an element of {@code superset}. */
+  private static boolean isSubset(BitSet subset, BitSet superset) {
+    BitSet rest = (BitSet) subset.clone();
+    rest.andNot(superset);
+    return rest.isEmpty();
   }
 
   /** checks if the variable has been declared in a try-with-resources header */
@@ -1207,12 +1875,19 @@ class MustCallInvokedChecker {
    * declared on the class type of {@code localVarWithTree.first}. Then, it gets @CalledMethod
    * annotation of {@code localVarWithTree.first} to do a subtyping check and reports an error if
    * the check fails.
+   *
+   * <p>The error is reported on the local that was added first to the alias set, which is usually
+   * the one that holds the result of the allocation.
+   *
+   * @param aliasSetId the index of a set of locals that all refer to the same resource
+   * @param cmStore the called-methods store to use
+   * @param mcStore the must-call store to use
+   * @param outOfScopeReason the reason the resource is going out of scope, for the error message
    */
   private void checkMustCall(
-      ImmutableSet<LocalVarWithTree> localVarWithTreeSet,
-      CFStore cmStore,
-      CFStore mcStore,
-      String outOfScopeReason) {
+      int aliasSetId, CFStore cmStore, CFStore mcStore, String outOfScopeReason) {
+
+    List<LocalVarWithTree> localVarWithTreeSet = index.locals(aliasSetId);
 
     List<String> mustCallValue = typeFactory.getMustCallValue(localVarWithTreeSet, mcStore);
     // optimization: if there are no must-call methods, we do not need to perform the check
@@ -1244,19 +1919,18 @@ class MustCallInvokedChecker {
                 .getAnnotationInHierarchy(typeFactory.top);
       }
 
-      if (calledMethodsSatisfyMustCall(mustCallValue, cmAnno)) {
+      if (typeFactory.calledMethodsSatisfyMustCall(mustCallValue, cmAnno)) {
         mustCallSatisfied = true;
         break;
       }
     }
 
     if (!mustCallSatisfied) {
-      if (reportedMustCallErrors.stream()
-          .noneMatch(localVarTree -> localVarWithTreeSet.contains(localVarTree))) {
-        LocalVarWithTree firstlocalVarWithTree = localVarWithTreeSet.iterator().next();
+      if (!reportedMustCallErrors.intersects(index.aliasSet(aliasSetId))) {
+        LocalVarWithTree firstlocalVarWithTree = localVarWithTreeSet.get(0);
         if (!checker.shouldSkipUses(TreeUtils.elementFromTree(firstlocalVarWithTree.tree))) {
-          reportedMustCallErrors.add(firstlocalVarWithTree);
-          checker.reportError(
+          reportedMustCallErrors.set(index.firstLocal(aliasSetId));
+          reportError(
               firstlocalVarWithTree.tree,
               "required.method.not.called",
               formatMissingMustCallMethods(mustCallValue),
@@ -1267,13 +1941,44 @@ class MustCallInvokedChecker {
     }
   }
 
+  /**
+   * Reports an error, and records it in the {@link #cacheEntry} if there is one.
+   *
+   * @param tree the tree to report the error on
+   * @param messageKey the message key of the error
+   * @param args the arguments of the message
+   */
+  private void reportError(Tree tree, @CompilerMessageKey String messageKey, Object... args) {
+    report(tree, true, messageKey, args);
+  }
+
+  /**
+   * Reports a diagnostic, and records it in the {@link #cacheEntry} if there is one.
+   *
+   * @param tree the tree to report the diagnostic on
+   * @param isError true to report an error, false to report a warning
+   * @param messageKey the message key of the diagnostic
+   * @param args the arguments of the message
+   */
+  private void report(
+      Tree tree, boolean isError, @CompilerMessageKey String messageKey, Object... args) {
+    if (isError) {
+      checker.reportError(tree, messageKey, args);
+    } else {
+      checker.reportWarning(tree, messageKey, args);
+    }
+    if (cacheEntry != null) {
+      cacheEntry.record(tree, isError, messageKey, args);
+    }
+  }
+
   /**
    * Increment the -AcountMustCall counter.
    *
    * @param node the node being counted, to extract the type
    */
   private void incrementNumMustCall(Node node) {
-    if (checker.hasOption(ObjectConstructionChecker.COUNT_MUST_CALL)) {
+    if (countingSlice && checker.hasOption(ObjectConstructionChecker.COUNT_MUST_CALL)) {
       TypeMirror type = node.getType();
       incrementMustCallImpl(type);
     }
@@ -1306,101 +2011,334 @@ class MustCallInvokedChecker {
   }
 
   /**
-   * Do the called methods represented by the {@link CalledMethods} type {@code cmAnno} include all
-   * the methods in {@code mustCallValue}?
+   * The exception types we are ignoring, to avoid excessive false positives. For now we ignore
+   * {@code java.lang.Throwable}, {@code NullPointerException}, and the runtime exceptions that can
+   * occur at any point during the program due to something going wrong in the JVM, like
+   * OutOfMemoryErrors or ClassCircularityErrors. The type factory looks up their elements once; see
+   * {@link ObjectConstructionAnnotatedTypeFactory#isIgnoredExceptionType(TypeMirror)}.
    */
-  private boolean calledMethodsSatisfyMustCall(
-      List<String> mustCallValue, AnnotationMirror cmAnno) {
-    AnnotationMirror cmAnnoForMustCallMethods =
-        typeFactory.createCalledMethods(mustCallValue.toArray(new String[0]));
-    return typeFactory.getQualifierHierarchy().isSubtype(cmAnno, cmAnnoForMustCallMethods);
-  }
+  /* package-private */ static final List<Class<? extends Throwable>> IGNORED_EXCEPTION_TYPES =
+      Arrays.asList(
+          // any method call has a CFG edge for Throwable/RuntimeException/Error to represent
+          // run-time misbehavior. Ignore it.
+          Throwable.class,
+          RuntimeException.class,
+          Error.class,
+          // use the Nullness Checker to prove this won't happen
+          NullPointerException.class,
+          // these errors can't be predicted statically, so we'll ignore them and assume they won't
+          // happen
+          ClassCircularityError.class,
+          ClassFormatError.class,
+          NoClassDefFoundError.class,
+          OutOfMemoryError.class,
+          // it's not our problem if the Java type system is wrong
+          ClassCastException.class,
+          // it's not our problem if the code is going to divide by zero.
+          ArithmeticException.class,
+          // use the Index Checker to catch the next two cases
+          ArrayIndexOutOfBoundsException.class,
+          NegativeArraySizeException.class,
+          // Most of the time, this exception is infeasible, as the charset used
+          // is guaranteed to be present by the Java spec (e.g., "UTF-8"). Eventually,
+          // we could refine this exclusion by looking at the charset being requested
+          UnsupportedEncodingException.class);
 
   /**
-   * Is {@code exceptionClassName} an exception type we are ignoring, to avoid excessive false
-   * positives? For now we ignore {@code java.lang.Throwable}, {@code NullPointerException}, and the
-   * runtime exceptions that can occur at any point during the program due to something going wrong
-   * in the JVM, like OutOfMemoryErrors or ClassCircularityErrors.
+   * Formats a list of must-call method names to be printed in an error message.
+   *
+   * @param mustCallVal the list of must-call strings
+   * @return a formatted string
    */
-  private static boolean isIgnoredExceptionType(@FullyQualifiedName Name exceptionClassName) {
-    // any method call has a CFG edge for Throwable/RuntimeException/Error to represent run-time
-    // misbehavior. Ignore it.
-    return exceptionClassName.contentEquals(Throwable.class.getCanonicalName())
-        || exceptionClassName.contentEquals(RuntimeException.class.getCanonicalName())
-        || exceptionClassName.contentEquals(Error.class.getCanonicalName())
-        // use the Nullness Checker to prove this won't happen
-        || exceptionClassName.contentEquals(NullPointerException.class.getCanonicalName())
-        // these errors can't be predicted statically, so we'll ignore them and assume they won't
-        // happen
-        || exceptionClassName.contentEquals(ClassCircularityError.class.getCanonicalName())
-        || exceptionClassName.contentEquals(ClassFormatError.class.getCanonicalName())
-        || exceptionClassName.contentEquals(NoClassDefFoundError.class.getCanonicalName())
-        || exceptionClassName.contentEquals(OutOfMemoryError.class.getCanonicalName())
-        // it's not our problem if the Java type system is wrong
-        || exceptionClassName.contentEquals(ClassCastException.class.getCanonicalName())
-        // it's not our problem if the code is going to divide by zero.
-        || exceptionClassName.contentEquals(ArithmeticException.class.getCanonicalName())
-        // use the Index Checker to catch the next two cases
-        || exceptionClassName.contentEquals(ArrayIndexOutOfBoundsException.class.getCanonicalName())
-        || exceptionClassName.contentEquals(NegativeArraySizeException.class.getCanonicalName())
-        // Most of the time, this exception is infeasible, as the charset used
-        // is guaranteed to be present by the Java spec (e.g., "UTF-8"). Eventually,
-        // we could refine this exclusion by looking at the charset being requested
-        || exceptionClassName.contentEquals(UnsupportedEncodingException.class.getCanonicalName());
+  /* package-private */
+  static String formatMissingMustCallMethods(List<String> mustCallVal) {
+    if (mustCallVal.size() == 1) {
+      return "method " + mustCallVal.get(0);
+    } else {
+      return "methods " + String.join(", ", mustCallVal);
+    }
   }
 
   /**
-   * Updates {@code visited} and {@code worklist} if the input {@code state} has not been visited
-   * yet.
+   * The order in which the consistency analysis processes the blocks of a CFG: reverse post-order,
+   * except that each loop head is moved after the blocks that jump back to it. In this order, a
+   * block is usually processed only after all of its predecessors, and the body of a loop is
+   * processed before its head is re-processed with the states that flowed around the loop, so
+   * fewer blocks are processed more than once.
    */
-  private static void propagate(
-      BlockWithLocals state, Set<BlockWithLocals> visited, Deque<BlockWithLocals> worklist) {
+  private static class BlockOrder implements Comparator<Block> {
+
+    /** The position of each block of the CFG in this order, keyed by block identity. */
+    private final Map<Block, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Computes the order of the blocks of the given CFG.
+     *
+     * @param cfg a control flow graph
+     */
+    BlockOrder(ControlFlowGraph cfg) {
+      Map<Block, Integer> rpoIndex = new IdentityHashMap<>();
+      for (Block block : cfg.getDepthFirstOrderedBlocks()) {
+        rpoIndex.putIfAbsent(block, rpoIndex.size());
+      }
+      // Even positions are for blocks in reverse post-order; the odd position right after a
+      // block is for the loop heads that it jumps back to.
+      for (Map.Entry<Block, Integer> entry : rpoIndex.entrySet()) {
+        positions.put(entry.getKey(), 2 * entry.getValue());
+      }
+      for (Map.Entry<Block, Integer> entry : rpoIndex.entrySet()) {
+        int sourceIndex = entry.getValue();
+        for (Block succ : entry.getKey().getSuccessors()) {
+          Integer succIndex = rpoIndex.get(succ);
+          if (succIndex != null && succIndex <= sourceIndex) {
+            // a back edge, so succ is a loop head
+            positions.merge(succ, 2 * sourceIndex + 1, Math::max);
+          }
+        }
+      }
+    }
 
-    if (visited.add(state)) {
-      worklist.add(state);
+    @Override
+    public int compare(Block b1, Block b2) {
+      return Integer.compare(position(b1), position(b2));
+    }
+
+    /**
+     * Returns the position of the given block in this order.
+     *
+     * @param block a block
+     * @return the position of {@code block}; blocks that are unreachable from the entry block come
+     *     last
+     */
+    private int position(Block block) {
+      Integer position = positions.get(block);
+      return position == null ? Integer.MAX_VALUE : position;
     }
   }
 
   /**
-   * Formats a list of must-call method names to be printed in an error message.
+   * The worklist of the consistency analysis performed by {@link #checkMustCallInvoked}, together
+   * with the record of the states reached so far. Subclasses decide when reaching a block with a
+   * set of tracked locals requires (re-)processing that block; pending blocks are processed in the
+   * given {@link BlockOrder}.
+   */
+  private abstract static class StateWorklist {
+
+    /** The number of distinct states that have been added to this worklist. */
+    long numStates = 0;
+
+    /**
+     * Records that {@code block} is reached with the tracked locals {@code defs}, and adds the
+     * block to the worklist if that may produce new results.
+     *
+     * @param block the block that is reached
+     * @param defs the tracked locals at the start of {@code block}
+     * @param commonVars if {@code defs} is a joined state, the variables that are tracked on every
+     *     path that it joins (see {@link MustCallInvokedChecker#commonVars}); null if {@code defs}
+     *     is the state of a single path
+     */
+    abstract void propagate(Block block, BitSet defs, @Nullable BitSet commonVars);
+
+    /** Returns true if there are no more states to process. */
+    abstract boolean isEmpty();
+
+    /** Removes and returns the next state to process. */
+    abstract BlockWithLocals next();
+  }
+
+  /**
+   * The original, path-sensitive worklist: every distinct {@link BlockWithLocals} that is reached
+   * is processed exactly once. The number of states can grow exponentially with the branching of
+   * the method.
    *
-   * @param mustCallVal the list of must-call strings
-   * @return a formatted string
+   * <p>This class interns the states: it creates at most one {@link BlockWithLocals} for each pair
+   * of a block and a set of defs, so states are compared by reference. Reaching a state that has
+   * already been visited neither copies the defs nor allocates a new state.
    */
-  /* package-private */
-  static String formatMissingMustCallMethods(List<String> mustCallVal) {
-    if (mustCallVal.size() == 1) {
-      return "method " + mustCallVal.get(0);
-    } else {
-      return "methods " + String.join(", ", mustCallVal);
+  private static class PathSensitiveStateWorklist extends StateWorklist {
+
+    /**
+     * The canonical state for each block and set of defs that have been reached. The outer map is
+     * keyed by block identity; the inner maps are keyed by the (immutable) {@link
+     * BlockWithLocals#localSetInfo} of their values.
+     */
+    private final Map<Block, Map<BitSet, BlockWithLocals>> visited = new IdentityHashMap<>();
+
+    /** The states that still need to be processed. */
+    private final PriorityQueue<BlockWithLocals> worklist;
+
+    /** The order in which blocks are processed. */
+    private final BlockOrder order;
+
+    /**
+     * Creates a new, empty worklist.
+     *
+     * @param order the order in which blocks are processed
+     */
+    PathSensitiveStateWorklist(BlockOrder order) {
+      this.worklist = new PriorityQueue<>(Comparator.comparing(state -> state.block, order));
+      this.order = order;
+    }
+
+    /**
+     * Returns a joining worklist whose pending states are the join of the pending states of this
+     * worklist. The joining worklist soundly over-approximates the states that this worklist would
+     * reach, so the analysis can continue with it when this worklist has become too expensive.
+     *
+     * @param index the index of the locals and alias sets of the method
+     * @return a joining worklist that continues the work of this worklist
+     */
+    JoiningStateWorklist toJoiningStateWorklist(LocalVarIndex index) {
+      JoiningStateWorklist result = new JoiningStateWorklist(order, index);
+      for (BlockWithLocals state : worklist) {
+        result.propagate(state.block, state.localSetInfo, null);
+      }
+      worklist.clear();
+      return result;
+    }
+
+    @Override
+    void propagate(Block block, BitSet defs, @Nullable BitSet commonVars) {
+      Map<BitSet, BlockWithLocals> statesOfBlock =
+          visited.computeIfAbsent(block, b -> new HashMap<>());
+      if (!statesOfBlock.containsKey(defs)) {
+        BlockWithLocals state = new BlockWithLocals(block, defs);
+        statesOfBlock.put(state.localSetInfo, state);
+        worklist.add(state);
+        numStates++;
+      }
+    }
+
+    @Override
+    boolean isEmpty() {
+      return worklist.isEmpty();
+    }
+
+    @Override
+    BlockWithLocals next() {
+      return worklist.remove();
     }
   }
 
   /**
-   * A pair of a {@link Block} and a set of {@link LocalVarWithTree}. In our algorithm, a
-   * BlockWithLocals represents visiting a {@link Block} while checking the {@link
-   * org.checkerframework.checker.mustcall.qual.MustCall} obligations for a set of locals.
+   * A worklist that keeps a single state per block. The state of a block is the join (union) of
+   * the sets of tracked locals of all the paths that reach it, so each set in it represents a
+   * resource that is unreleased on at least one path to the block. Alongside it, the worklist keeps
+   * the intersection of the variables that are tracked on each of these paths; see {@link
+   * MustCallInvokedChecker#commonVars}. A block is re-processed only when its joined state grows or
+   * its common variables shrink. Both change monotonically, within the finite sets of alias sets
+   * and variables of the method, so the analysis terminates.
+   *
+   * <p>Most of the transfer functions of the check act on each tracked alias set independently, and
+   * each set is checked with the same dataflow stores whichever path it came from, so each error
+   * that the path-sensitive analysis reports about an alias set is also reported about the joined
+   * state. The checks that ask whether a variable is tracked at all would be unsound on the union,
+   * since a variable that is tracked on one path would be considered tracked on all of them, so
+   * they consult the common variables instead: the receiver of a re-assigned owning field and the
+   * target of a {@code @CreatesObligation} method are only valid if they are tracked on every path,
+   * and the result of a {@code @MustCallAlias} call whose argument is tracked on some paths only is
+   * also tracked on its own. The join thus loses precision only by reporting errors that the
+   * path-sensitive analysis does not report.
    */
-  private static class BlockWithLocals {
-    public final Block block;
-    public final ImmutableSet<ImmutableSet<LocalVarWithTree>> localSetInfo;
+  private static class JoiningStateWorklist extends StateWorklist {
+
+    /** The joined state of each block that has been reached. */
+    private final Map<Block, BitSet> joinedDefs = new HashMap<>();
+
+    /**
+     * The variables that are tracked on every path to each block that has been reached. They are
+     * the intersection of the {@link MustCallInvokedChecker#commonVars} of the incoming states.
+     */
+    private final Map<Block, BitSet> joinedCommonVars = new HashMap<>();
+
+    /** The index of the locals and alias sets of the method. */
+    private final LocalVarIndex index;
+
+    /** The blocks that need to be (re-)processed, without duplicates. */
+    private final PriorityQueue<Block> worklist;
+
+    /** The blocks that are currently in {@link #worklist}. */
+    private final Set<Block> pending = new HashSet<>();
+
+    /**
+     * Creates a new, empty worklist.
+     *
+     * @param order the order in which blocks are processed
+     * @param index the index of the locals and alias sets of the method
+     */
+    JoiningStateWorklist(BlockOrder order, LocalVarIndex index) {
+      this.worklist = new PriorityQueue<>(order);
+      this.index = index;
+    }
 
-    public BlockWithLocals(Block b, Set<ImmutableSet<LocalVarWithTree>> ls) {
-      this.block = b;
-      this.localSetInfo = ImmutableSet.copyOf(ls);
+    @Override
+    void propagate(Block block, BitSet defs, @Nullable BitSet commonVars) {
+      // a variable is only tracked on every path if defs tracks it at all
+      BitSet vars = index.variablesOf(defs);
+      if (commonVars != null) {
+        vars.and(commonVars);
+      }
+      BitSet joined = joinedDefs.get(block);
+      boolean changed;
+      if (joined == null) {
+        joinedDefs.put(block, (BitSet) defs.clone());
+        joinedCommonVars.put(block, vars);
+        changed = true;
+      } else {
+        BitSet common = joinedCommonVars.get(block);
+        changed = !isSubset(defs, joined) || !isSubset(common, vars);
+        joined.or(defs);
+        common.and(vars);
+      }
+      if (changed) {
+        numStates++;
+      }
+      if (changed && pending.add(block)) {
+        worklist.add(block);
+      }
     }
 
     @Override
-    public boolean equals(Object o) {
-      if (this == o) return true;
-      if (o == null || getClass() != o.getClass()) return false;
-      BlockWithLocals that = (BlockWithLocals) o;
-      return block.equals(that.block) && localSetInfo.equals(that.localSetInfo);
+    boolean isEmpty() {
+      return worklist.isEmpty();
     }
 
     @Override
-    public int hashCode() {
-      return Objects.hash(block, localSetInfo);
+    BlockWithLocals next() {
+      Block block = worklist.remove();
+      pending.remove(block);
+      // snapshot the joined state, which may keep changing while this block is being processed
+      return new BlockWithLocals(block, joinedDefs.get(block), joinedCommonVars.get(block));
+    }
+  }
+
+  /**
+   * A pair of a {@link Block} and a set of {@link LocalVarWithTree}. In our algorithm, a
+   * BlockWithLocals represents visiting a {@link Block} while checking the {@link
+   * org.checkerframework.checker.mustcall.qual.MustCall} obligations for a set of locals. The
+   * locals are represented as a set of alias set indices; see {@link LocalVarIndex}.
+   *
+   * <p>States are interned by the {@link StateWorklist} that creates them, so this class uses
+   * reference equality.
+   */
+  private static class BlockWithLocals {
+    public final Block block;
+    /** The indices of the alias sets tracked at the start of the block. Must not be modified. */
+    public final BitSet localSetInfo;
+    /**
+     * If {@link #localSetInfo} is a joined state, the variables that are tracked on every path that
+     * it joins; null otherwise. Must not be modified.
+     */
+    public final @Nullable BitSet commonVars;
+
+    public BlockWithLocals(Block b, BitSet ls) {
+      this(b, ls, null);
+    }
+
+    public BlockWithLocals(Block b, BitSet ls, @Nullable BitSet commonVars) {
+      this.block = b;
+      this.localSetInfo = (BitSet) ls.clone();
+      this.commonVars = commonVars == null ? null : (BitSet) commonVars.clone();
     }
   }
 
@@ -1409,14 +2347,20 @@ class MustCallInvokedChecker {
    * variable. Besides a normal assignment, the tree may be a {@link VariableTree} in the case of a
    * formal parameter. We keep the tree for error-reporting purposes (so we can report an error per
    * assignment to a local, pinpointing the expression whose MustCall may not be satisfied).
+   *
+   * <p>Within {@link MustCallInvokedChecker}, instances are interned by a {@link LocalVarIndex} and
+   * referred to by their index.
    */
   /* package-private */ static class LocalVarWithTree {
     public final LocalVariable localVar;
     public final Tree tree;
+    /** The hash code of this, which is computed once since both fields are immutable. */
+    private final int hashCode;
 
     public LocalVarWithTree(LocalVariable localVarNode, Tree tree) {
       this.localVar = localVarNode;
       this.tree = tree;
+      this.hashCode = Objects.hash(localVar, tree);
     }
 
     @Override
@@ -1434,7 +2378,7 @@ class MustCallInvokedChecker {
 
     @Override
     public int hashCode() {
-      return Objects.hash(localVar, tree);
+      return hashCode;
     }
   }
 }
@@ -0,0 +1,754 @@
+package org.checkerframework.checker.objectconstruction;
+
+import static javax.tools.Diagnostic.Kind.WARNING;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.CodeSource;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import org.checkerframework.checker.mustcall.MustCallChecker;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.dataflow.cfg.node.FieldAccessNode;
+import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.cfg.node.ObjectCreationNode;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * An on-disk cache of the results of {@link MustCallInvokedChecker} for individual methods, used
+ * when the {@link ObjectConstructionChecker#MUST_CALL_RESULT_CACHE} option is supplied.
+ *
+ * <p>The result of a method is the list of diagnostics that the consistency check reported for it.
+ * It is stored under a hash of the source text of the method, of the options passed to the
+ * checker, and of the declarations (including their annotations) of the enclosing class, of the
+ * methods, constructors and fields that the method uses, and of the types of the expressions of
+ * the method and their supertypes. When a method with the same hash is checked again, its
+ * diagnostics are reported again without running the consistency check. Each diagnostic is stored
+ * with the position of the tree that it is reported on, relative to the start of the method, so
+ * that it can be reported again even if the method moved within its file.
+ *
+ * <p>Only the consistency check is skipped: the Checker Framework runs the dataflow analyses of
+ * both checkers and the visitors on each class as a whole, so their cost and their diagnostics are
+ * not affected by this cache. Lambdas and initializers are not cached, and neither are the methods
+ * checked with the {@link ObjectConstructionChecker#COUNT_MUST_CALL} option, which needs the
+ * analysis to run, or with the {@link ObjectConstructionChecker#MUST_CALL_TIME_LIMIT} option, whose
+ * results depend on the speed of the machine.
+ *
+ * <p>The annotations that stub files add to a declaration are not part of its {@link
+ * Element#getAnnotationMirrors()}, so they are not in the hash of a method. Instead, the first line
+ * of a cache file contains a hash of the classes of the checker, which include its built-in stub
+ * files, and of the stub files supplied with the {@code -Astubs} option. A cache file whose first
+ * line differs, because it was written by another build of the checker or with other stub files,
+ * is ignored.
+ *
+ * <p>The cache is read when the checker is initialized and written when type processing is over.
+ * Each result is stored with the source file of its method. The file written contains the results
+ * of the methods checked by this compilation, and the results read from the file for source files
+ * that this compilation did not compile, such as those of other modules or of an incremental
+ * build that recompiled only some files. The results of a recompiled source file are replaced, so
+ * that the file does not grow when methods change.
+ */
+/* package-private */ final class MustCallResultCache {
+
+  /**
+   * The start of the first line of a cache file. Must be changed whenever the format of the file
+   * or the contents of the hash change, so that old cache files are ignored.
+   */
+  private static final String FORMAT = "mustCallResultCache 3";
+
+  /**
+   * Classes of the checkers whose results are cached. The hash of the jar files or directories
+   * that they are loaded from identifies the build of the checker.
+   */
+  private static final List<Class<?>> CHECKER_CLASSES =
+      Arrays.asList(ObjectConstructionChecker.class, MustCallChecker.class, BaseTypeChecker.class);
+
+  /** The name of the Checker Framework option that supplies additional stub files. */
+  private static final String STUBS_OPTION = "stubs";
+
+  /**
+   * The prefix of the line that starts the result of a method in a cache file, which is followed
+   * by the hash of the method and by its source file.
+   */
+  private static final String METHOD_PREFIX = "M\t";
+
+  /** The prefix of a line that contains a diagnostic in a cache file. */
+  private static final String DIAGNOSTIC_PREFIX = "D\t";
+
+  /** The file that the cache is read from and written to. */
+  private final Path file;
+
+  /**
+   * The first line of the cache file: {@link #FORMAT} and the hash of the checker and of its stub
+   * files, or null if they could not be read, in which case nothing is cached.
+   */
+  private final @Nullable String header;
+
+  /** The results read from {@link #file}, keyed by the hash of their method. */
+  private final Map<String, Result> previousResults;
+
+  /** The results of the methods checked by this compilation, keyed by the hash of their method. */
+  private final Map<String, Result> currentResults = new HashMap<>();
+
+  /**
+   * The source files compiled by this compilation, as returned by {@link #sourceFile}. The results
+   * read from {@link #file} for these files are not written back.
+   */
+  private final Set<String> compiledSources = new HashSet<>();
+
+  /** The description of each declaration that is part of a hash; see {@link #describe(Element)}. */
+  private final Map<Element, String> descriptions = new IdentityHashMap<>();
+
+  /** The checker. */
+  private final ObjectConstructionChecker checker;
+
+  /** Used to compute the source positions of trees. */
+  private final SourcePositions positions;
+
+  /** The type utilities. */
+  private final Types types;
+
+  /**
+   * Creates a cache backed by the given file, and reads the file if it exists. A file that cannot
+   * be read, or that was written by another build of the checker or with other stub files, is
+   * ignored.
+   *
+   * @param fileName the name of the cache file
+   * @param checker the checker
+   */
+  MustCallResultCache(String fileName, ObjectConstructionChecker checker) {
+    this.file = Paths.get(fileName);
+    this.checker = checker;
+    this.positions = Trees.instance(checker.getProcessingEnvironment()).getSourcePositions();
+    this.types = checker.getProcessingEnvironment().getTypeUtils();
+    String header;
+    try {
+      header = computeHeader(checker);
+    } catch (IOException e) {
+      checker.message(WARNING, "Not using must call result cache %s: %s%n", file, e);
+      header = null;
+    }
+    this.header = header;
+    Map<String, Result> results;
+    try {
+      results = header == null ? new HashMap<>() : read(file, header);
+    } catch (NoSuchFileException e) {
+      results = new HashMap<>();
+    } catch (IOException | RuntimeException e) {
+      checker.message(WARNING, "Ignoring unreadable must call result cache %s: %s%n", file, e);
+      results = new HashMap<>();
+    }
+    this.previousResults = results;
+  }
+
+  /**
+   * Records that this compilation compiles the given compilation unit, so that the results read
+   * from the cache file for its methods are replaced by those of this compilation.
+   *
+   * @param root a compilation unit
+   */
+  void compiling(CompilationUnitTree root) {
+    compiledSources.add(sourceFile(root));
+  }
+
+  /**
+   * Returns the name under which the results of the methods of a compilation unit are stored.
+   *
+   * @param root a compilation unit
+   * @return the URI of the source file of {@code root}
+   */
+  private static String sourceFile(CompilationUnitTree root) {
+    return root.getSourceFile().toUri().toString();
+  }
+
+  /**
+   * Returns the cache entry of the method represented by the given CFG, which either already
+   * contains the diagnostics of the method or can record them.
+   *
+   * @param cfg the control flow graph of a method, lambda or initializer
+   * @param typeFactory the type factory of the checker
+   * @return the cache entry of {@code cfg}, or null if {@code cfg} cannot be cached
+   */
+  @Nullable Entry lookUp(ControlFlowGraph cfg, ObjectConstructionAnnotatedTypeFactory typeFactory) {
+    UnderlyingAST underlyingAST = cfg.getUnderlyingAST();
+    if (header == null || !(underlyingAST instanceof UnderlyingAST.CFGMethod)) {
+      return null;
+    }
+    MethodTree method = ((UnderlyingAST.CFGMethod) underlyingAST).getMethod();
+    CompilationUnitTree root = typeFactory.getPath(method).getCompilationUnit();
+    long start = positions.getStartPosition(root, method);
+    long end = positions.getEndPosition(root, method);
+    CharSequence source;
+    try {
+      source = root.getSourceFile().getCharContent(true);
+    } catch (IOException e) {
+      return null;
+    }
+    if (start < 0 || end > source.length() || start >= end) {
+      return null;
+    }
+
+    StringBuilder keyContents = new StringBuilder();
+    keyContents.append(header).append('\n');
+    for (Map.Entry<String, String> option : new TreeMap<>(checker.getOptions()).entrySet()) {
+      keyContents.append(option.getKey()).append('=').append(option.getValue()).append('\n');
+    }
+    ExecutableElement methodElt = TreeUtils.elementFromDeclaration(method);
+    TypeElement enclosingClass = ElementUtils.enclosingTypeElement(methodElt);
+    keyContents.append(enclosingClass).append('\n');
+    keyContents.append(source, (int) start, (int) end).append('\n');
+    Set<String> dependencies = new TreeSet<>();
+    for (Element member : enclosingClass.getEnclosedElements()) {
+      dependencies.add(describe(member));
+    }
+    for (Node node : cfg.getAllNodes()) {
+      addTypeDependencies(node.getType(), dependencies);
+      Element used = null;
+      if (node instanceof MethodInvocationNode) {
+        used = ((MethodInvocationNode) node).getTarget().getMethod();
+      } else if (node instanceof ObjectCreationNode) {
+        used = TreeUtils.elementFromUse(((ObjectCreationNode) node).getTree());
+      } else if (node instanceof FieldAccessNode) {
+        used = ((FieldAccessNode) node).getElement();
+      }
+      if (used != null) {
+        dependencies.add(describe(used));
+      }
+    }
+    for (String dependency : dependencies) {
+      keyContents.append(dependency).append('\n');
+    }
+    return new Entry(hash(keyContents), root, method, start);
+  }
+
+  /**
+   * Adds the descriptions of the declaration of the given type and of its supertypes to {@code
+   * dependencies}, since their annotations determine the default must-call obligations of the
+   * type.
+   *
+   * @param type the type of an expression
+   * @param dependencies the descriptions of the declarations that a method depends on
+   */
+  private void addTypeDependencies(TypeMirror type, Set<String> dependencies) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return;
+    }
+    TypeElement typeElt = (TypeElement) ((DeclaredType) type).asElement();
+    if (dependencies.add(describe(typeElt))) {
+      for (TypeMirror supertype : types.directSupertypes(type)) {
+        addTypeDependencies(supertype, dependencies);
+      }
+    }
+  }
+
+  /**
+   * Returns a description of the given declaration that contains its name, its type, its
+   * annotations and the annotations of its parameters.
+   *
+   * @param element a declaration
+   * @return a description of {@code element}
+   */
+  private String describe(Element element) {
+    String description = descriptions.get(element);
+    if (description == null) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(element.getEnclosingElement()).append(' ').append(element.getKind()).append(' ');
+      sb.append(element).append(' ').append(element.asType());
+      appendAnnotations(element, sb);
+      if (element instanceof ExecutableElement) {
+        for (VariableElement param : ((ExecutableElement) element).getParameters()) {
+          sb.append(" param ").append(param.asType());
+          appendAnnotations(param, sb);
+        }
+      }
+      description = sb.toString().replace('\n', ' ');
+      descriptions.put(element, description);
+    }
+    return description;
+  }
+
+  /**
+   * Appends the declaration annotations of the given element to {@code sb}.
+   *
+   * @param element a declaration
+   * @param sb the string builder to append to
+   */
+  private static void appendAnnotations(Element element, StringBuilder sb) {
+    for (AnnotationMirror anno : element.getAnnotationMirrors()) {
+      sb.append(' ').append(anno);
+    }
+  }
+
+  /**
+   * Returns the first line of the cache files written by the given checker: {@link #FORMAT},
+   * followed by the {@link #checkerHash} of the checker.
+   *
+   * @param checker the checker
+   * @return the header of the cache files of {@code checker}
+   * @throws IOException if one of the files cannot be read
+   */
+  private static String computeHeader(ObjectConstructionChecker checker) throws IOException {
+    return FORMAT + " " + checkerHash(checker);
+  }
+
+  /**
+   * Returns a hash of the contents of the jar files or class directories that the checkers in
+   * {@link #CHECKER_CLASSES} are loaded from, and of the stub files supplied with the {@code
+   * -Astubs} option. Also used by {@link OwnershipSummaries}.
+   *
+   * @param checker the checker
+   * @return the hash of the build and of the stub files of {@code checker}, in hexadecimal
+   * @throws IOException if one of the files cannot be read
+   */
+  static String checkerHash(ObjectConstructionChecker checker) throws IOException {
+    MessageDigest digest = newDigest();
+    Set<Path> codeSources = new TreeSet<>();
+    for (Class<?> c : CHECKER_CLASSES) {
+      CodeSource codeSource = c.getProtectionDomain().getCodeSource();
+      if (codeSource == null) {
+        throw new IOException("cannot determine where " + c.getName() + " was loaded from");
+      }
+      try {
+        codeSources.add(Paths.get(codeSource.getLocation().toURI()));
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        throw new IOException("cannot read " + codeSource.getLocation(), e);
+      }
+    }
+    for (Path codeSource : codeSources) {
+      digestFiles(codeSource, digest);
+    }
+    String stubs = checker.getOption(STUBS_OPTION);
+    if (stubs != null) {
+      for (String stub : stubs.split(File.pathSeparator)) {
+        // Stub files in the checker's jar are covered by its hash, and the option itself is part
+        // of the hash of each method.
+        Path stubPath = Paths.get(stub);
+        if (Files.exists(stubPath)) {
+          digestFiles(stubPath, digest);
+        }
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Adds the name and the contents of the given file, or of each file in the given directory and
+   * its subdirectories, to a digest, in a deterministic order.
+   *
+   * @param path a file or directory
+   * @param digest the digest to update
+   * @throws IOException if a file cannot be read
+   */
+  private static void digestFiles(Path path, MessageDigest digest) throws IOException {
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(path)) {
+      files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    for (Path f : files) {
+      digest.update(f.toString().getBytes(StandardCharsets.UTF_8));
+      digest.update(Files.readAllBytes(f));
+    }
+  }
+
+  /**
+   * Returns a new SHA-256 digest.
+   *
+   * @return a new SHA-256 digest
+   */
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new BugInCF("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Returns the SHA-256 hash of the given string, in hexadecimal. Also used by {@link
+   * OwnershipSummaries}.
+   *
+   * @param contents a string
+   * @return the hash of {@code contents}
+   */
+  static String hash(CharSequence contents) {
+    return toHex(newDigest().digest(contents.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Returns the given bytes in hexadecimal.
+   *
+   * @param bytes an array of bytes
+   * @return the hexadecimal representation of {@code bytes}
+   */
+  private static String toHex(byte[] bytes) {
+    StringBuilder result = new StringBuilder(2 * bytes.length);
+    for (byte b : bytes) {
+      result.append(String.format("%02x", b));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Writes the results of the methods checked by this compilation, and the results read from the
+   * cache file for the source files that this compilation did not compile, to the cache file.
+   * Failures are reported as warnings, since they do not affect the results of the compilation.
+   */
+  void write() {
+    if (header == null) {
+      return;
+    }
+    Map<String, Result> results = new TreeMap<>();
+    for (Map.Entry<String, Result> previous : previousResults.entrySet()) {
+      if (!compiledSources.contains(previous.getValue().sourceFile)) {
+        results.put(previous.getKey(), previous.getValue());
+      }
+    }
+    results.putAll(currentResults);
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        writer.write(header);
+        writer.newLine();
+        for (Map.Entry<String, Result> result : results.entrySet()) {
+          writer.write(
+              METHOD_PREFIX
+                  + result.getKey()
+                  + '\t'
+                  + Diagnostic.escape(result.getValue().sourceFile));
+          writer.newLine();
+          for (Diagnostic diagnostic : result.getValue().diagnostics) {
+            writer.write(DIAGNOSTIC_PREFIX + diagnostic.serialize());
+            writer.newLine();
+          }
+        }
+      }
+    } catch (IOException e) {
+      checker.message(WARNING, "Could not write must call result cache %s: %s%n", file, e);
+    }
+  }
+
+  /**
+   * Reads a cache file.
+   *
+   * @param file a cache file
+   * @param header the expected first line of {@code file}
+   * @return the results stored in {@code file}, keyed by the hash of their method; empty if the
+   *     first line of {@code file} is not {@code header}
+   * @throws IOException if {@code file} cannot be read
+   */
+  private static Map<String, Result> read(Path file, String header) throws IOException {
+    Map<String, Result> results = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      if (!header.equals(reader.readLine())) {
+        return results;
+      }
+      List<Diagnostic> current = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(METHOD_PREFIX)) {
+          String[] fields = line.substring(METHOD_PREFIX.length()).split("\t", -1);
+          if (fields.length != 2) {
+            throw new IOException("malformed line: " + line);
+          }
+          current = new ArrayList<>();
+          results.put(fields[0], new Result(Diagnostic.unescape(fields[1]), current));
+        } else if (line.startsWith(DIAGNOSTIC_PREFIX) && current != null) {
+          current.add(Diagnostic.deserialize(line.substring(DIAGNOSTIC_PREFIX.length())));
+        } else {
+          throw new IOException("malformed line: " + line);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * The cache entry of a single method. An entry either replays the diagnostics stored for the
+   * method by a previous compilation, or records the diagnostics reported by the consistency check
+   * and stores them in the cache.
+   */
+  /* package-private */ final class Entry {
+
+    /** The hash of the method. */
+    private final String key;
+
+    /** The compilation unit that contains the method. */
+    private final CompilationUnitTree root;
+
+    /** The method. */
+    private final MethodTree method;
+
+    /** The start position of the method in its compilation unit. */
+    private final long start;
+
+    /** The diagnostics recorded by {@link #record}. */
+    private final List<Diagnostic> recorded = new ArrayList<>();
+
+    /**
+     * Creates a new cache entry.
+     *
+     * @param key the hash of the method
+     * @param root the compilation unit that contains the method
+     * @param method the method
+     * @param start the start position of the method in its compilation unit
+     */
+    private Entry(String key, CompilationUnitTree root, MethodTree method, long start) {
+      this.key = key;
+      this.root = root;
+      this.method = method;
+      this.start = start;
+    }
+
+    /**
+     * Reports the diagnostics stored for this method, if there are any. Nothing is reported if the
+     * method is not in the cache or if a tree that a diagnostic was reported on cannot be found.
+     *
+     * @return true if the diagnostics of the method were reported, and the consistency check can
+     *     be skipped
+     */
+    boolean replay() {
+      Result previous = previousResults.get(key);
+      if (previous == null) {
+        return false;
+      }
+      List<Diagnostic> diagnostics = previous.diagnostics;
+      List<Tree> trees = new ArrayList<>(diagnostics.size());
+      for (Diagnostic diagnostic : diagnostics) {
+        Tree tree = findTree(start + diagnostic.offset, diagnostic.treeKind);
+        if (tree == null) {
+          return false;
+        }
+        trees.add(tree);
+      }
+      for (int i = 0; i < diagnostics.size(); i++) {
+        Diagnostic diagnostic = diagnostics.get(i);
+        if (diagnostic.isError) {
+          checker.reportError(trees.get(i), diagnostic.messageKey, (Object[]) diagnostic.args);
+        } else {
+          checker.reportWarning(trees.get(i), diagnostic.messageKey, (Object[]) diagnostic.args);
+        }
+      }
+      currentResults.put(key, new Result(sourceFile(root), diagnostics));
+      return true;
+    }
+
+    /**
+     * Returns the tree of the given kind that starts at the given position within the method.
+     *
+     * @param position a position in the compilation unit of the method
+     * @param kind the kind of the tree
+     * @return the tree of kind {@code kind} at {@code position}, or null if there is none
+     */
+    private @Nullable Tree findTree(long position, Tree.Kind kind) {
+      return new TreeScanner<@Nullable Tree, Void>() {
+        @Override
+        public @Nullable Tree scan(Tree tree, Void p) {
+          if (tree == null) {
+            return null;
+          }
+          if (tree.getKind() == kind && positions.getStartPosition(root, tree) == position) {
+            return tree;
+          }
+          return super.scan(tree, p);
+        }
+
+        @Override
+        public @Nullable Tree reduce(@Nullable Tree r1, @Nullable Tree r2) {
+          return r1 != null ? r1 : r2;
+        }
+      }.scan(method, null);
+    }
+
+    /**
+     * Records a diagnostic reported by the consistency check on this method.
+     *
+     * @param tree the tree that the diagnostic is reported on, which must be within the method
+     * @param isError true if the diagnostic is an error, false if it is a warning
+     * @param messageKey the message key of the diagnostic
+     * @param args the arguments of the message
+     */
+    void record(Tree tree, boolean isError, String messageKey, Object... args) {
+      String[] argStrings = new String[args.length];
+      for (int i = 0; i < args.length; i++) {
+        argStrings[i] = String.valueOf(args[i]);
+      }
+      long offset = positions.getStartPosition(root, tree) - start;
+      recorded.add(new Diagnostic(isError, tree.getKind(), offset, messageKey, argStrings));
+    }
+
+    /** Stores the recorded diagnostics in the cache, once the consistency check is done. */
+    void store() {
+      currentResults.put(key, new Result(sourceFile(root), recorded));
+    }
+  }
+
+  /** The result of a method stored in the cache. */
+  private static final class Result {
+
+    /** The source file of the method; see {@link MustCallResultCache#sourceFile}. */
+    final String sourceFile;
+
+    /** The diagnostics reported for the method. */
+    final List<Diagnostic> diagnostics;
+
+    /**
+     * Creates a new result.
+     *
+     * @param sourceFile the source file of the method
+     * @param diagnostics the diagnostics reported for the method
+     */
+    Result(String sourceFile, List<Diagnostic> diagnostics) {
+      this.sourceFile = sourceFile;
+      this.diagnostics = diagnostics;
+    }
+  }
+
+  /** A diagnostic stored in the cache. */
+  private static final class Diagnostic {
+
+    /** True if this diagnostic is an error, false if it is a warning. */
+    final boolean isError;
+
+    /** The kind of the tree that this diagnostic is reported on. */
+    final Tree.Kind treeKind;
+
+    /** The start position of the tree, relative to the start position of its method. */
+    final long offset;
+
+    /** The message key of this diagnostic. */
+    final String messageKey;
+
+    /** The arguments of the message of this diagnostic. */
+    final String[] args;
+
+    /**
+     * Creates a new diagnostic.
+     *
+     * @param isError true if the diagnostic is an error, false if it is a warning
+     * @param treeKind the kind of the tree that the diagnostic is reported on
+     * @param offset the start position of the tree, relative to the start of its method
+     * @param messageKey the message key of the diagnostic
+     * @param args the arguments of the message of the diagnostic
+     */
+    Diagnostic(boolean isError, Tree.Kind treeKind, long offset, String messageKey, String[] args) {
+      this.isError = isError;
+      this.treeKind = treeKind;
+      this.offset = offset;
+      this.messageKey = messageKey;
+      this.args = args;
+    }
+
+    /**
+     * Returns this diagnostic as a single line of tab-separated fields.
+     *
+     * @return the serialized form of this diagnostic
+     */
+    String serialize() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(isError ? "error" : "warning").append('\t').append(treeKind).append('\t');
+      sb.append(offset).append('\t').append(escape(messageKey));
+      for (String arg : args) {
+        sb.append('\t').append(escape(arg));
+      }
+      return sb.toString();
+    }
+
+    /**
+     * Parses a diagnostic written by {@link #serialize()}.
+     *
+     * @param line the serialized form of a diagnostic
+     * @return the diagnostic
+     * @throws IllegalArgumentException if {@code line} is malformed
+     */
+    static Diagnostic deserialize(String line) {
+      String[] fields = line.split("\t", -1);
+      if (fields.length < 4) {
+        throw new IllegalArgumentException("malformed diagnostic: " + line);
+      }
+      String[] args = new String[fields.length - 4];
+      for (int i = 0; i < args.length; i++) {
+        args[i] = unescape(fields[i + 4]);
+      }
+      return new Diagnostic(
+          fields[0].equals("error"),
+          Tree.Kind.valueOf(fields[1]),
+          Long.parseLong(fields[2]),
+          unescape(fields[3]),
+          args);
+    }
+
+    /**
+     * Escapes backslashes, tabs and line terminators, so that a string can be stored in a field.
+     *
+     * @param s a string
+     * @return {@code s}, escaped
+     */
+    private static String escape(String s) {
+      return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * Reverses {@link #escape(String)}.
+     *
+     * @param s an escaped string
+     * @return {@code s}, unescaped
+     */
+    private static String unescape(String s) {
+      StringBuilder sb = new StringBuilder(s.length());
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c == '\\' && i + 1 < s.length()) {
+          char next = s.charAt(++i);
+          sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+        } else {
+          sb.append(c);
+        }
+      }
+      return sb.toString();
+    }
+  }
+}
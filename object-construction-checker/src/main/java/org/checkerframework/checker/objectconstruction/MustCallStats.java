@@ -0,0 +1,239 @@
+package org.checkerframework.checker.objectconstruction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * Writes the statistics requested by the {@link ObjectConstructionChecker#MUST_CALL_STATS} option:
+ * one JSON object per line for each method, lambda and initializer, and one for each compilation
+ * unit that sums the statistics of its methods.
+ *
+ * <p>The fields of a method record are:
+ *
+ * <ul>
+ *   <li>{@code type}: {@code "method"}
+ *   <li>{@code file}: the source file of the method
+ *   <li>{@code kind}: {@code "method"}, {@code "lambda"} or {@code "initializer"}
+ *   <li>{@code name}: the name of the method and of its class, such as {@code "Foo#bar"}
+ *   <li>{@code line}: the line on which the method starts
+ *   <li>{@code mustCallDataflowMs}: the time spent in the dataflow analysis of the Must Call
+ *       Checker, including building its CFG
+ *   <li>{@code calledMethodsDataflowMs}: the time spent in the dataflow analysis of this checker,
+ *       including building its CFG, but not the time of the Must Call Checker's analysis
+ *   <li>{@code consistencyCheckMs}: the time spent in {@link
+ *       MustCallInvokedChecker#checkMustCallInvoked}
+ *   <li>{@code worklistPops}: the number of states processed by the consistency check
+ *   <li>{@code distinctStates}: the number of distinct states reached by the consistency check
+ *   <li>{@code maxTrackedAliasSets}: the largest number of alias sets tracked in a single state
+ *   <li>{@code memoHits} and {@code memoMisses}: the number of must-call satisfaction checks and
+ *       must-call LUBs that were answered by the memo tables of the {@link
+ *       ObjectConstructionAnnotatedTypeFactory}, and that had to be computed
+ *   <li>{@code replayed}: 1 if the diagnostics of the method were reported again from the {@link
+ *       MustCallResultCache} instead of running the consistency check, and 0 otherwise
+ * </ul>
+ *
+ * <p>A compilation unit record has {@code type} {@code "compilationUnit"}, the same {@code file},
+ * the number of {@code methods}, and the sums of the other fields, except for {@code
+ * maxTrackedAliasSets}, which is the maximum over the methods.
+ */
+/* package-private */ final class MustCallStats {
+
+  /** The statistics of a single method, lambda or initializer. */
+  /* package-private */ static final class MethodStats {
+
+    /** The time spent in the dataflow analysis of the Must Call Checker, in nanoseconds. */
+    long mustCallDataflowNanos = 0;
+
+    /** The time spent in the dataflow analysis of this checker, in nanoseconds. */
+    long calledMethodsDataflowNanos = 0;
+
+    /** The time spent in the consistency check, in nanoseconds. */
+    long consistencyCheckNanos = 0;
+
+    /** The number of states processed by the consistency check. */
+    long worklistPops = 0;
+
+    /** The number of distinct states reached by the consistency check. */
+    long distinctStates = 0;
+
+    /** The largest number of alias sets tracked in a single state. */
+    long maxTrackedAliasSets = 0;
+
+    /** The number of memo table hits. */
+    long memoHits = 0;
+
+    /** The number of memo table misses. */
+    long memoMisses = 0;
+
+    /** The number of methods whose diagnostics were replayed from the result cache. */
+    long replayed = 0;
+
+    /**
+     * Adds the statistics of {@code other} to these statistics.
+     *
+     * @param other the statistics of a method
+     */
+    void add(MethodStats other) {
+      mustCallDataflowNanos += other.mustCallDataflowNanos;
+      calledMethodsDataflowNanos += other.calledMethodsDataflowNanos;
+      consistencyCheckNanos += other.consistencyCheckNanos;
+      worklistPops += other.worklistPops;
+      distinctStates += other.distinctStates;
+      maxTrackedAliasSets = Math.max(maxTrackedAliasSets, other.maxTrackedAliasSets);
+      memoHits += other.memoHits;
+      memoMisses += other.memoMisses;
+      replayed += other.replayed;
+    }
+
+    /**
+     * Appends the fields of these statistics to a JSON object that is being written.
+     *
+     * @param sb the string builder that contains the start of a JSON object
+     */
+    void appendFields(StringBuilder sb) {
+      appendMillis(sb, "mustCallDataflowMs", mustCallDataflowNanos);
+      appendMillis(sb, "calledMethodsDataflowMs", calledMethodsDataflowNanos);
+      appendMillis(sb, "consistencyCheckMs", consistencyCheckNanos);
+      sb.append(",\"worklistPops\":").append(worklistPops);
+      sb.append(",\"distinctStates\":").append(distinctStates);
+      sb.append(",\"maxTrackedAliasSets\":").append(maxTrackedAliasSets);
+      sb.append(",\"memoHits\":").append(memoHits);
+      sb.append(",\"memoMisses\":").append(memoMisses);
+      sb.append(",\"replayed\":").append(replayed);
+    }
+
+    /**
+     * Appends a field whose value is a duration in milliseconds.
+     *
+     * @param sb the string builder that contains the start of a JSON object
+     * @param name the name of the field
+     * @param nanos the duration, in nanoseconds
+     */
+    private static void appendMillis(StringBuilder sb, String name, long nanos) {
+      sb.append(",\"").append(name).append("\":");
+      sb.append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+  }
+
+  /** The file that the statistics are written to. */
+  private final Path file;
+
+  /** The writer for {@link #file}. */
+  private final PrintWriter out;
+
+  /** The source file of the compilation unit whose methods are being analyzed, or null. */
+  private @Nullable String currentFile = null;
+
+  /** The number of methods of the current compilation unit. */
+  private int currentMethods = 0;
+
+  /** The sums of the statistics of the methods of the current compilation unit. */
+  private MethodStats currentTotals = new MethodStats();
+
+  /**
+   * Creates a new statistics writer, which truncates the given file.
+   *
+   * @param fileName the name of the file to write the statistics to
+   * @throws UserError if the file cannot be opened
+   */
+  MustCallStats(String fileName) {
+    this.file = Paths.get(fileName);
+    try {
+      BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+      this.out = new PrintWriter(writer);
+    } catch (IOException e) {
+      throw new UserError(
+          "-A%s: could not open %s: %s", ObjectConstructionChecker.MUST_CALL_STATS, file, e);
+    }
+  }
+
+  /**
+   * Writes the record of a method, and adds its statistics to those of its compilation unit.
+   *
+   * @param sourceFile the source file of the method
+   * @param kind {@code "method"}, {@code "lambda"} or {@code "initializer"}
+   * @param name the name of the method
+   * @param line the line on which the method starts
+   * @param stats the statistics of the method
+   */
+  void methodDone(String sourceFile, String kind, String name, long line, MethodStats stats) {
+    if (!sourceFile.equals(currentFile)) {
+      compilationUnitDone();
+      currentFile = sourceFile;
+    }
+    StringBuilder sb = new StringBuilder("{\"type\":\"method\"");
+    appendString(sb, "file", sourceFile);
+    appendString(sb, "kind", kind);
+    appendString(sb, "name", name);
+    sb.append(",\"line\":").append(line);
+    stats.appendFields(sb);
+    out.println(sb.append('}'));
+    currentMethods++;
+    currentTotals.add(stats);
+  }
+
+  /** Writes the record of the current compilation unit, if any of its methods was analyzed. */
+  void compilationUnitDone() {
+    if (currentFile == null) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder("{\"type\":\"compilationUnit\"");
+    appendString(sb, "file", currentFile);
+    sb.append(",\"methods\":").append(currentMethods);
+    currentTotals.appendFields(sb);
+    out.println(sb.append('}'));
+    currentFile = null;
+    currentMethods = 0;
+    currentTotals = new MethodStats();
+  }
+
+  /**
+   * Writes the record of the last compilation unit and closes the file.
+   *
+   * @return false if writing the file failed
+   */
+  boolean close() {
+    compilationUnitDone();
+    out.close();
+    return !out.checkError();
+  }
+
+  /**
+   * Returns the name of the file that the statistics are written to.
+   *
+   * @return the file that the statistics are written to
+   */
+  Path getFile() {
+    return file;
+  }
+
+  /**
+   * Appends a field whose value is a string.
+   *
+   * @param sb the string builder that contains the start of a JSON object
+   * @param name the name of the field
+   * @param value the value of the field
+   */
+  private static void appendString(StringBuilder sb, String name, String value) {
+    sb.append(",\"").append(name).append("\":\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    sb.append('"');
+  }
+}
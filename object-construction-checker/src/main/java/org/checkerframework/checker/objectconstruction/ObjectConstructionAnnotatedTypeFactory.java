@@ -2,22 +2,36 @@ package org.checkerframework.checker.objectconstruction;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
 import org.checkerframework.checker.calledmethods.CalledMethodsAnnotatedTypeFactory;
 import org.checkerframework.checker.calledmethods.qual.CalledMethods;
 import org.checkerframework.checker.calledmethods.qual.CalledMethodsBottom;
 import org.checkerframework.checker.calledmethods.qual.CalledMethodsPredicate;
 import org.checkerframework.checker.calledmethods.qual.EnsuresCalledMethods;
+import org.checkerframework.checker.mustcall.CreatesObligationInfo;
+import org.checkerframework.checker.mustcall.DataflowTimer;
 import org.checkerframework.checker.mustcall.MustCallAnnotatedTypeFactory;
 import org.checkerframework.checker.mustcall.MustCallChecker;
 import org.checkerframework.checker.mustcall.MustCallNoAccumulationFramesChecker;
@@ -27,17 +41,21 @@ import org.checkerframework.checker.mustcall.qual.MustCallAlias;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.objectconstruction.MustCallInvokedChecker.LocalVarWithTree;
 import org.checkerframework.checker.objectconstruction.qual.EnsuresCalledMethodsVarArgs;
-import org.checkerframework.com.google.common.collect.ImmutableSet;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
 import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
 import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.expression.JavaExpression;
 import org.checkerframework.dataflow.expression.LocalVariable;
 import org.checkerframework.framework.flow.CFStore;
 import org.checkerframework.framework.flow.CFValue;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.framework.util.JavaExpressionParseUtil.JavaExpressionParseException;
+import org.checkerframework.framework.util.StringToJavaExpression;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
@@ -46,7 +64,8 @@ import org.checkerframework.javacutil.TypesUtils;
  * The annotated type factory for the object construction checker. Primarily responsible for the
  * subtyping rules between @CalledMethod annotations.
  */
-public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotatedTypeFactory {
+public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotatedTypeFactory
+    implements CreatesObligationInfo.Provider {
 
   final ExecutableElement calledMethodsValueElement =
       TreeUtils.getMethod(CalledMethods.class, "value", 0, processingEnv);
@@ -65,6 +84,98 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
    * annotation and the corresponding nodes.
    */
   private BiMap<LocalVariableNode, Tree> tempVarToNode = HashBiMap.create();
+
+  /**
+   * The elements of {@link MustCallInvokedChecker#IGNORED_EXCEPTION_TYPES}, looked up once so that
+   * each exceptional CFG edge can be checked with a single set lookup.
+   */
+  private final Set<TypeElement> ignoredExceptionTypes = new HashSet<>();
+
+  /**
+   * Memo table for {@link #calledMethodsSatisfyMustCall(List, AnnotationMirror)}, keyed by the
+   * identity of the called-methods annotation and then by the must-call methods. Cleared for each
+   * compilation unit.
+   */
+  private final Map<AnnotationMirror, Map<List<String>, Boolean>> mustCallSatisfiedCache =
+      new IdentityHashMap<>();
+
+  /**
+   * Memo table for {@link #getMustCallValue(List, CFStore)}, keyed by the identity of the store and
+   * then by the alias set. The dataflow analysis caches the stores that it computes for a node, so
+   * the stores of the many exit edges of a call site are usually identical. Cleared after the
+   * consistency check of each CFG, so that it does not keep the stores of earlier CFGs alive. The
+   * value may be null, like the result of {@link #getMustCallValue(List, CFStore)}.
+   */
+  private final Map<@Nullable CFStore, Map<List<LocalVarWithTree>, @Nullable List<String>>>
+      mustCallLubCache = new IdentityHashMap<>();
+
+  /**
+   * Measures the time spent in the dataflow analysis of this type factory, or null if the {@link
+   * ObjectConstructionChecker#MUST_CALL_STATS} option was not supplied or no class has been
+   * analyzed yet.
+   */
+  private @Nullable DataflowTimer dataflowTimer = null;
+
+  /**
+   * Measures the time spent in the dataflow analysis of the Must Call Checker, or null if it is
+   * not measured.
+   */
+  private @Nullable DataflowTimer mustCallDataflowTimer = null;
+
+  /**
+   * The statistics of the method whose CFG is being post-processed, or null if the {@link
+   * ObjectConstructionChecker#MUST_CALL_STATS} option was not supplied.
+   */
+  /* package-private */ MustCallStats.@Nullable MethodStats methodStats = null;
+
+  /**
+   * The method names that appear in called-methods annotations, indexed by their ids in {@link
+   * #methodNameIds}.
+   */
+  private final List<String> methodNames = new ArrayList<>();
+
+  /**
+   * The id of each method name that appears in called-methods annotations: the bit that represents
+   * it in the sets of {@link #calledMethodsAnnotations} and {@link #calledMethodsBits}.
+   */
+  private final Map<String, Integer> methodNameIds = new HashMap<>();
+
+  /**
+   * The canonical called-methods annotation for each set of method names; see {@link
+   * #createAccumulatorAnnotation(List)}. Null only while the superclass constructor runs.
+   */
+  private final Map<BitSet, AnnotationMirror> calledMethodsAnnotations = new HashMap<>();
+
+  /**
+   * The set of method names of each canonical called-methods annotation, keyed by the identity of
+   * the annotation; the inverse of {@link #calledMethodsAnnotations}. The qualifier hierarchy
+   * operates on these sets, and converts them back to annotations only when it returns a bound.
+   */
+  private final Map<AnnotationMirror, BitSet> calledMethodsBits = new IdentityHashMap<>();
+
+  /**
+   * The set of method names of each other called-methods annotation that has been compared by this
+   * type factory, such as one written in source, keyed by the identity of the annotation. Cleared
+   * for each compilation unit, because such annotations are not shared between compilation units.
+   */
+  private final Map<AnnotationMirror, BitSet> nonCanonicalCalledMethodsBits =
+      new IdentityHashMap<>();
+
+  /**
+   * The {@link CreatesObligation} annotations of each method that has been looked up; see {@link
+   * #getCreatesObligationInfo}. Not cleared for each compilation unit, because declaration
+   * annotations do not change during a compilation.
+   */
+  private final Map<ExecutableElement, CreatesObligationInfo> createsObligationInfos =
+      new HashMap<>();
+
+  /**
+   * Memo table for {@link #getCreatesObligationTargets(MethodTree)}, keyed by the method. Cleared
+   * for each compilation unit.
+   */
+  private final Map<MethodTree, List<@Nullable JavaExpression>> createsObligationTargets =
+      new HashMap<>();
+
   /**
    * Default constructor matching super. Should be called automatically.
    *
@@ -72,6 +183,15 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
    */
   public ObjectConstructionAnnotatedTypeFactory(final BaseTypeChecker checker) {
     super(checker);
+    for (Class<? extends Throwable> exceptionClass :
+        MustCallInvokedChecker.IGNORED_EXCEPTION_TYPES) {
+      TypeElement exceptionElement = elements.getTypeElement(exceptionClass.getCanonicalName());
+      if (exceptionElement != null) {
+        ignoredExceptionTypes.add(exceptionElement);
+      }
+    }
+    calledMethodsAnnotations.put(new BitSet(), top);
+    calledMethodsBits.put(top, new BitSet());
     this.postInit();
   }
 
@@ -91,15 +211,245 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
     return createAccumulatorAnnotation(Arrays.asList(val));
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The result is canonical: equal sets of methods, in any order and with any duplicates,
+   * yield the same instance, so that the qualifier hierarchy and the memo tables of this class can
+   * compare called-methods annotations by identity. Builder-heavy code accumulates the same sets
+   * of methods at many call sites.
+   */
+  @Override
+  public AnnotationMirror createAccumulatorAnnotation(List<String> values) {
+    if (calledMethodsAnnotations == null) {
+      // Called by the superclass constructor to create top, before this class is initialized.
+      return super.createAccumulatorAnnotation(values);
+    }
+    BitSet bits = new BitSet();
+    for (String value : values) {
+      Integer id = methodNameIds.get(value);
+      if (id == null) {
+        id = methodNames.size();
+        methodNames.add(value);
+        methodNameIds.put(value, id);
+      }
+      bits.set(id);
+    }
+    return calledMethodsAnnotation(bits);
+  }
+
+  /**
+   * Returns the canonical called-methods annotation for a set of method names.
+   *
+   * @param bits the ids of the method names, which must not be modified afterwards
+   * @return the canonical annotation whose values are the method names
+   */
+  private AnnotationMirror calledMethodsAnnotation(BitSet bits) {
+    AnnotationMirror result = calledMethodsAnnotations.get(bits);
+    if (result == null) {
+      List<String> values = new ArrayList<>(bits.cardinality());
+      for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+        values.add(methodNames.get(id));
+      }
+      Collections.sort(values);
+      result = super.createAccumulatorAnnotation(values);
+      calledMethodsAnnotations.put(bits, result);
+      calledMethodsBits.put(result, bits);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the set of method names of a called-methods annotation, as ids in {@link
+   * #methodNameIds}.
+   *
+   * @param anno an annotation for which {@link #isAccumulatorAnnotation} is true
+   * @return the ids of the methods in {@code anno}, which must not be modified
+   */
+  private BitSet calledMethodsBits(AnnotationMirror anno) {
+    BitSet bits = calledMethodsBits.get(anno);
+    if (bits == null) {
+      bits = nonCanonicalCalledMethodsBits.get(anno);
+    }
+    if (bits == null) {
+      // An annotation that was not created by this type factory, such as one written in source.
+      bits =
+          calledMethodsBits.get(
+              createAccumulatorAnnotation(
+                  AnnotationUtils.getElementValueArray(
+                      anno, calledMethodsValueElement, String.class)));
+      nonCanonicalCalledMethodsBits.put(anno, bits);
+    }
+    return bits;
+  }
+
+  @Override
+  protected QualifierHierarchy createQualifierHierarchy() {
+    return new ObjectConstructionQualifierHierarchy(getSupportedTypeQualifiers(), elements);
+  }
+
+  /**
+   * The qualifier hierarchy of the Called Methods type system, which short-circuits on identical
+   * annotations, and compares and bounds two called-methods annotations with bit operations on
+   * their sets of method names. Because {@link #createAccumulatorAnnotation(List)} is canonical,
+   * most comparisons during dataflow are between identical annotations.
+   */
+  protected class ObjectConstructionQualifierHierarchy extends AccumulationQualifierHierarchy {
+
+    /**
+     * Creates a new qualifier hierarchy.
+     *
+     * @param qualifierClasses the classes of the qualifiers of the hierarchy
+     * @param elements element utilities
+     */
+    protected ObjectConstructionQualifierHierarchy(
+        Collection<Class<? extends Annotation>> qualifierClasses, Elements elements) {
+      super(qualifierClasses, elements);
+    }
+
+    @Override
+    public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+      if (subAnno == superAnno) {
+        return true;
+      }
+      if (isAccumulatorAnnotation(subAnno) && isAccumulatorAnnotation(superAnno)) {
+        // The subtype must have called every method that the supertype has called.
+        BitSet subBits = calledMethodsBits(subAnno);
+        BitSet superBits = calledMethodsBits(superAnno);
+        for (int id = superBits.nextSetBit(0); id >= 0; id = superBits.nextSetBit(id + 1)) {
+          if (!subBits.get(id)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.isSubtype(subAnno, superAnno);
+    }
+
+    @Override
+    public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+      if (a1 == a2) {
+        return a1;
+      }
+      if (isAccumulatorAnnotation(a1) && isAccumulatorAnnotation(a2)) {
+        BitSet lub = (BitSet) calledMethodsBits(a1).clone();
+        lub.and(calledMethodsBits(a2));
+        return calledMethodsAnnotation(lub);
+      }
+      return super.leastUpperBound(a1, a2);
+    }
+
+    @Override
+    public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+      if (a1 == a2) {
+        return a1;
+      }
+      if (isAccumulatorAnnotation(a1) && isAccumulatorAnnotation(a2)) {
+        BitSet glb = (BitSet) calledMethodsBits(a1).clone();
+        glb.or(calledMethodsBits(a2));
+        return calledMethodsAnnotation(glb);
+      }
+      return super.greatestLowerBound(a1, a2);
+    }
+  }
+
+  @Override
+  public void setRoot(@Nullable CompilationUnitTree root) {
+    super.setRoot(root);
+    mustCallSatisfiedCache.clear();
+    nonCanonicalCalledMethodsBits.clear();
+    createsObligationTargets.clear();
+    MustCallResultCache resultCache = ((ObjectConstructionChecker) checker).mustCallResultCache;
+    if (resultCache != null && root != null) {
+      resultCache.compiling(root);
+    }
+  }
+
+  @Override
+  protected void performFlowAnalysis(ClassTree classTree) {
+    if (((ObjectConstructionChecker) checker).mustCallStats == null) {
+      super.performFlowAnalysis(classTree);
+      return;
+    }
+    if (dataflowTimer == null) {
+      if (checker.hasOption(ObjectConstructionChecker.CHECK_MUST_CALL)) {
+        MustCallAnnotatedTypeFactory mcAtf = getTypeFactoryOfSubchecker(MustCallChecker.class);
+        mustCallDataflowTimer = mcAtf.enableDataflowTimer();
+      }
+      dataflowTimer = new DataflowTimer(mustCallDataflowTimer);
+    }
+    dataflowTimer.start();
+    try {
+      super.performFlowAnalysis(classTree);
+    } finally {
+      dataflowTimer.stop();
+    }
+  }
+
   @Override
   public void postAnalyze(ControlFlowGraph cfg) {
+    if (dataflowTimer != null) {
+      dataflowTimer.cfgAnalyzed(cfg);
+      methodStats = new MustCallStats.MethodStats();
+    }
     if (checker.hasOption(ObjectConstructionChecker.CHECK_MUST_CALL)) {
+      // Runs on the javac thread: the type factories and this.analysis are not thread-safe.
       MustCallInvokedChecker mustCallInvokedChecker =
           new MustCallInvokedChecker(this, (ObjectConstructionChecker) this.checker, this.analysis);
-      mustCallInvokedChecker.checkMustCallInvoked(cfg);
+      long start = System.nanoTime();
+      try {
+        mustCallInvokedChecker.checkMustCallInvoked(cfg);
+      } finally {
+        // The stores of this CFG are not queried again.
+        mustCallLubCache.clear();
+      }
+      if (methodStats != null) {
+        methodStats.consistencyCheckNanos = System.nanoTime() - start;
+      }
     }
     super.postAnalyze(cfg);
     tempVarToNode.clear();
+    if (dataflowTimer != null && methodStats != null) {
+      reportMethodStats(cfg, dataflowTimer, methodStats);
+      methodStats = null;
+      dataflowTimer.resume();
+    }
+  }
+
+  /**
+   * Writes the statistics of the given CFG, which has just been post-processed.
+   *
+   * @param cfg the control flow graph of a method, lambda or initializer
+   * @param dataflowTimer the timer of the dataflow analysis of this type factory
+   * @param stats the statistics of {@code cfg} collected so far
+   */
+  private void reportMethodStats(
+      ControlFlowGraph cfg, DataflowTimer dataflowTimer, MustCallStats.MethodStats stats) {
+    UnderlyingAST underlyingAST = cfg.getUnderlyingAST();
+    Tree tree = DataflowTimer.treeOf(underlyingAST);
+    stats.calledMethodsDataflowNanos = dataflowTimer.takeNanos(tree);
+    if (mustCallDataflowTimer != null) {
+      stats.mustCallDataflowNanos = mustCallDataflowTimer.takeNanos(tree);
+    }
+    String kind;
+    String name;
+    if (underlyingAST instanceof UnderlyingAST.CFGMethod) {
+      UnderlyingAST.CFGMethod cfgMethod = (UnderlyingAST.CFGMethod) underlyingAST;
+      kind = "method";
+      name = cfgMethod.getClassTree().getSimpleName() + "#" + cfgMethod.getMethod().getName();
+    } else if (underlyingAST instanceof UnderlyingAST.CFGLambda) {
+      kind = "lambda";
+      name = "lambda";
+    } else {
+      UnderlyingAST.CFGStatement cfgStatement = (UnderlyingAST.CFGStatement) underlyingAST;
+      kind = "initializer";
+      name = cfgStatement.getClassTree().getSimpleName().toString();
+    }
+    CompilationUnitTree root = getPath(tree).getCompilationUnit();
+    long line =
+        root.getLineMap().getLineNumber(trees.getSourcePositions().getStartPosition(root, tree));
+    ((ObjectConstructionChecker) checker)
+        .mustCallStats.methodDone(root.getSourceFile().getName(), kind, name, line, stats);
   }
 
   /**
@@ -113,7 +463,29 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
    * @return the list of must-call method names
    */
   public @Nullable List<String> getMustCallValue(
-      ImmutableSet<LocalVarWithTree> localVarWithTreeSet, @Nullable CFStore mcStore) {
+      List<LocalVarWithTree> localVarWithTreeSet, @Nullable CFStore mcStore) {
+    Map<List<LocalVarWithTree>, @Nullable List<String>> cacheForStore =
+        mustCallLubCache.computeIfAbsent(mcStore, s -> new HashMap<>());
+    if (cacheForStore.containsKey(localVarWithTreeSet)) {
+      countCacheAccess(true);
+      return cacheForStore.get(localVarWithTreeSet);
+    }
+    countCacheAccess(false);
+    List<String> result = computeMustCallValue(localVarWithTreeSet, mcStore);
+    cacheForStore.put(localVarWithTreeSet, result);
+    return result;
+  }
+
+  /**
+   * Computes the result of {@link #getMustCallValue(List, CFStore)}, without memoization.
+   *
+   * @param localVarWithTreeSet a set of local variables with their assignment trees, all of which
+   *     represent the same resource
+   * @param mcStore a CFStore produced by the MustCall checker's dataflow analysis, or null
+   * @return the list of must-call method names
+   */
+  private @Nullable List<String> computeMustCallValue(
+      List<LocalVarWithTree> localVarWithTreeSet, @Nullable CFStore mcStore) {
     MustCallAnnotatedTypeFactory mustCallAnnotatedTypeFactory =
         getTypeFactoryOfSubchecker(MustCallChecker.class);
 
@@ -150,10 +522,7 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
           if (typeElt.asType().getKind() == TypeKind.VOID) {
             return Collections.emptyList();
           }
-          mcAnno =
-              mustCallAnnotatedTypeFactory
-                  .getAnnotatedType(typeElt)
-                  .getAnnotationInHierarchy(mustCallAnnotatedTypeFactory.TOP);
+          mcAnno = mustCallAnnotatedTypeFactory.getDefaultMustCall(typeElt);
         }
       }
       mcLub = mustCallAnnotatedTypeFactory.getQualifierHierarchy().leastUpperBound(mcLub, mcAnno);
@@ -193,6 +562,15 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
   List<String> getMustCallValue(Element element) {
     MustCallAnnotatedTypeFactory mustCallAnnotatedTypeFactory =
         getTypeFactoryOfSubchecker(MustCallChecker.class);
+    if (element instanceof TypeElement) {
+      AnnotationMirror defaultMustCall =
+          mustCallAnnotatedTypeFactory.getDefaultMustCall((TypeElement) element);
+      return defaultMustCall != null
+              && AnnotationUtils.areSameByName(
+                  defaultMustCall, "org.checkerframework.checker.mustcall.qual.MustCall")
+          ? getMustCallValues(defaultMustCall)
+          : Collections.emptyList();
+    }
     AnnotatedTypeMirror mustCallAnnotatedType =
         mustCallAnnotatedTypeFactory.getAnnotatedType(element);
     AnnotationMirror mustCallAnnotation = mustCallAnnotatedType.getAnnotation(MustCall.class);
@@ -215,6 +593,66 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
     return tempVarToNode.inverse().get(node.getTree());
   }
 
+  /**
+   * Is {@code exceptionType} an exception type that the must-call consistency check ignores, to
+   * avoid excessive false positives? See {@link MustCallInvokedChecker#IGNORED_EXCEPTION_TYPES}.
+   *
+   * @param exceptionType the type of exception of an exceptional CFG edge
+   * @return true if CFG edges for {@code exceptionType} should be ignored
+   */
+  /* package-private */
+  boolean isIgnoredExceptionType(TypeMirror exceptionType) {
+    return ignoredExceptionTypes.contains(TypesUtils.getTypeElement(exceptionType));
+  }
+
+  /**
+   * Do the called methods represented by the {@link CalledMethods} type {@code cmAnno} include all
+   * the methods in {@code mustCallValue}? The result is memoized for each compilation unit.
+   *
+   * @param mustCallValue the methods that must be called
+   * @param cmAnno a called-methods annotation
+   * @return true if {@code cmAnno} includes every method in {@code mustCallValue}
+   */
+  /* package-private */
+  boolean calledMethodsSatisfyMustCall(List<String> mustCallValue, AnnotationMirror cmAnno) {
+    Map<List<String>, Boolean> cacheForAnno =
+        mustCallSatisfiedCache.computeIfAbsent(cmAnno, a -> new HashMap<>());
+    Boolean result = cacheForAnno.get(mustCallValue);
+    countCacheAccess(result != null);
+    if (result == null) {
+      AnnotationMirror cmAnnoForMustCallMethods =
+          createCalledMethods(mustCallValue.toArray(new String[0]));
+      result = getQualifierHierarchy().isSubtype(cmAnno, cmAnnoForMustCallMethods);
+      cacheForAnno.put(mustCallValue, result);
+    }
+    return result;
+  }
+
+  /**
+   * Counts a hit or miss in one of the memo tables of this type factory, if the {@link
+   * ObjectConstructionChecker#COUNT_MUST_CALL} or {@link ObjectConstructionChecker#MUST_CALL_STATS}
+   * option was supplied.
+   *
+   * @param hit true if the memo table contained the result
+   */
+  private void countCacheAccess(boolean hit) {
+    if (methodStats != null) {
+      if (hit) {
+        methodStats.memoHits++;
+      } else {
+        methodStats.memoMisses++;
+      }
+    }
+    if (checker.hasOption(ObjectConstructionChecker.COUNT_MUST_CALL)) {
+      ObjectConstructionChecker ocChecker = (ObjectConstructionChecker) checker;
+      if (hit) {
+        ocChecker.numMustCallCacheHits++;
+      } else {
+        ocChecker.numMustCallCacheMisses++;
+      }
+    }
+  }
+
   /* package-private */
   boolean isTempVar(Node node) {
     return tempVarToNode.containsKey(node);
@@ -228,7 +666,7 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
   /**
    * Returns true if the type of the tree includes a must-call annotation. Note that this method may
    * not consider dataflow, and is only safe to use on declarations, such as method trees or
-   * parameter trees. Use {@link #getMustCallValue(ImmutableSet, CFStore)} (and check for emptiness)
+   * parameter trees. Use {@link #getMustCallValue(List, CFStore)} (and check for emptiness)
    * if you are trying to determine whether a local variable has must-call obligations.
    */
   boolean hasMustCall(Tree t) {
@@ -260,8 +698,47 @@ public class ObjectConstructionAnnotatedTypeFactory extends CalledMethodsAnnotat
    */
   public boolean hasCreatesObligation(MethodInvocationNode node) {
     ExecutableElement decl = TreeUtils.elementFromUse(node.getTree());
-    return getDeclAnnotation(decl, CreatesObligation.class) != null
-        || getDeclAnnotation(decl, CreatesObligation.List.class) != null;
+    return getCreatesObligationInfo(decl).hasCreatesObligation();
+  }
+
+  @Override
+  public CreatesObligationInfo getCreatesObligationInfo(ExecutableElement method) {
+    CreatesObligationInfo result = createsObligationInfos.get(method);
+    if (result == null) {
+      result = CreatesObligationInfo.compute(method, this);
+      createsObligationInfos.put(method, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the targets of the {@link CreatesObligation} annotations of a method, parsed in the
+   * context of its body, in the order of {@link CreatesObligationInfo#getTargets()}. The result is
+   * memoized for each compilation unit, because the consistency check compares the targets of the
+   * enclosing method with each reset and each field re-assignment in its body.
+   *
+   * @param method a method declaration
+   * @return the parsed targets, with null for each target that cannot be parsed
+   */
+  /* package-private */ List<@Nullable JavaExpression> getCreatesObligationTargets(
+      MethodTree method) {
+    List<@Nullable JavaExpression> result = createsObligationTargets.get(method);
+    if (result == null) {
+      List<String> targets =
+          getCreatesObligationInfo(TreeUtils.elementFromDeclaration(method)).getTargets();
+      result = new ArrayList<>(targets.size());
+      for (String target : targets) {
+        JavaExpression expr;
+        try {
+          expr = StringToJavaExpression.atMethodBody(target, method, checker);
+        } catch (JavaExpressionParseException e) {
+          expr = null;
+        }
+        result.add(expr);
+      }
+      createsObligationTargets.put(method, result);
+    }
+    return result;
   }
 
   public boolean useAccumulationFrames() {
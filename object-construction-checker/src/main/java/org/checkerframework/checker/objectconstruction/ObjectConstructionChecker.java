@@ -6,6 +6,14 @@ import static org.checkerframework.checker.mustcall.MustCallChecker.NO_LIGHTWEIG
 import static org.checkerframework.checker.mustcall.MustCallChecker.NO_RESOURCE_ALIASES;
 import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.CHECK_MUST_CALL;
 import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.COUNT_MUST_CALL;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.MERGE_MUST_CALL_STATES;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.MUST_CALL_RESULT_CACHE;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.MUST_CALL_STATE_LIMIT;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.MUST_CALL_STATS;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.MUST_CALL_TIME_LIMIT;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.OWNERSHIP_SUMMARIES;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.SLICE_MUST_CALL_OBLIGATIONS;
+import static org.checkerframework.checker.objectconstruction.ObjectConstructionChecker.SPARSE_MUST_CALL_TRAVERSAL;
 
 import java.util.LinkedHashSet;
 import java.util.Properties;
@@ -13,11 +21,13 @@ import org.checkerframework.checker.calledmethods.CalledMethodsChecker;
 import org.checkerframework.checker.compilermsgs.qual.CompilerMessageKey;
 import org.checkerframework.checker.mustcall.MustCallChecker;
 import org.checkerframework.checker.mustcall.MustCallNoAccumulationFramesChecker;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.common.basetype.BaseTypeVisitor;
 import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.source.SupportedOptions;
 import org.checkerframework.framework.source.SuppressWarningsPrefix;
+import org.checkerframework.javacutil.UserError;
 
 /**
  * The primary typechecker for the object construction checker, which allows programmers to specify
@@ -37,6 +47,14 @@ import org.checkerframework.framework.source.SuppressWarningsPrefix;
 @SupportedOptions({
   CHECK_MUST_CALL,
   COUNT_MUST_CALL,
+  MERGE_MUST_CALL_STATES,
+  MUST_CALL_RESULT_CACHE,
+  MUST_CALL_STATE_LIMIT,
+  MUST_CALL_STATS,
+  MUST_CALL_TIME_LIMIT,
+  OWNERSHIP_SUMMARIES,
+  SLICE_MUST_CALL_OBLIGATIONS,
+  SPARSE_MUST_CALL_TRAVERSAL,
   NO_ACCUMULATION_FRAMES,
   NO_LIGHTWEIGHT_OWNERSHIP,
   NO_RESOURCE_ALIASES
@@ -47,6 +65,77 @@ public class ObjectConstructionChecker extends CalledMethodsChecker {
 
   public static final String COUNT_MUST_CALL = "countMustCall";
 
+  /**
+   * If this option is supplied, the must-call consistency check keeps a single, joined state per
+   * CFG block instead of exploring every distinct set of tracked locals that reaches the block.
+   */
+  public static final String MERGE_MUST_CALL_STATES = "mergeMustCallStates";
+
+  /**
+   * The maximum number of states that the must-call consistency check may process for a single
+   * method (or lambda or initializer) before it merges the remaining states, as if {@link
+   * #MERGE_MUST_CALL_STATES} were supplied for the rest of the method. Unbounded by default.
+   */
+  public static final String MUST_CALL_STATE_LIMIT = "mustCallStateLimit";
+
+  /**
+   * The maximum time, in milliseconds, that the must-call consistency check may spend on a single
+   * method (or lambda or initializer) before it merges the remaining states, as if {@link
+   * #MERGE_MUST_CALL_STATES} were supplied for the rest of the method. Unbounded by default.
+   */
+  public static final String MUST_CALL_TIME_LIMIT = "mustCallTimeLimit";
+
+  /**
+   * If this option is supplied, the must-call consistency check does not visit the blocks that are
+   * reached while no locals are tracked and that cannot start tracking one, so its cost depends on
+   * the parts of a method that handle resources rather than on the size of the method.
+   */
+  public static final String SPARSE_MUST_CALL_TRAVERSAL = "sparseMustCallTraversal";
+
+  /**
+   * If this option is supplied, the must-call consistency check analyzes each obligation of a
+   * method (each owning parameter and each call whose result has a must-call obligation)
+   * separately, instead of tracking all of them in the same states.
+   */
+  public static final String SLICE_MUST_CALL_OBLIGATIONS = "sliceMustCallObligations";
+
+  /**
+   * The file in which the must-call consistency check caches its results, so that later
+   * compilations can skip the methods that did not change. See {@link MustCallResultCache}.
+   */
+  public static final String MUST_CALL_RESULT_CACHE = "mustCallResultCache";
+
+  /**
+   * The file to which the checker writes, as JSON lines, the time spent in the dataflow analyses
+   * and in the must-call consistency check and the work done by the check, for each method and for
+   * each compilation unit. See {@link MustCallStats}.
+   */
+  public static final String MUST_CALL_STATS = "mustCallStats";
+
+  /**
+   * The file in which the must-call consistency check stores which parameters each method closes,
+   * so that later compilations can treat them like {@code @Owning} parameters at call sites. See
+   * {@link OwnershipSummaries}.
+   */
+  public static final String OWNERSHIP_SUMMARIES = "ownershipSummaries";
+
+  /** The value of the {@link #MUST_CALL_STATE_LIMIT} option, or -1 if it was not supplied. */
+  long mustCallStateLimit = -1;
+
+  /** The value of the {@link #MUST_CALL_TIME_LIMIT} option, or -1 if it was not supplied. */
+  long mustCallTimeLimit = -1;
+
+  /**
+   * The cache of must-call results, or null if {@link #MUST_CALL_RESULT_CACHE} was not supplied.
+   */
+  @Nullable MustCallResultCache mustCallResultCache = null;
+
+  /** The writer of must-call statistics, or null if {@link #MUST_CALL_STATS} was not supplied. */
+  @Nullable MustCallStats mustCallStats = null;
+
+  /** The ownership summaries, or null if {@link #OWNERSHIP_SUMMARIES} was not supplied. */
+  @Nullable OwnershipSummaries ownershipSummaries = null;
+
   /**
    * The number of expressions with must-call obligations that were checked. Incremented only if the
    * {@link #COUNT_MUST_CALL} option was supplied.
@@ -55,6 +144,79 @@ public class ObjectConstructionChecker extends CalledMethodsChecker {
 
   int numMustCallFailed = 0;
 
+  /**
+   * The number of blocks processed by the must-call consistency check, counting every time a block
+   * is processed. Incremented only if the {@link #COUNT_MUST_CALL} option was supplied.
+   */
+  int numMustCallBlockVisits = 0;
+
+  /**
+   * The number of methods (and lambdas and initializers) that the must-call consistency check
+   * traversed. Incremented only if the {@link #COUNT_MUST_CALL} option was supplied.
+   */
+  int numMustCallMethodsAnalyzed = 0;
+
+  /**
+   * The number of methods (and lambdas and initializers) that the must-call consistency check did
+   * not traverse, because they cannot create any must-call obligations. Incremented only if the
+   * {@link #COUNT_MUST_CALL} option was supplied.
+   */
+  int numMustCallMethodsSkipped = 0;
+
+  /**
+   * The number of must-call satisfaction checks and must-call LUBs that the memo tables of the
+   * {@link ObjectConstructionAnnotatedTypeFactory} answered. Incremented only if the {@link
+   * #COUNT_MUST_CALL} option was supplied.
+   */
+  int numMustCallCacheHits = 0;
+
+  /**
+   * The number of must-call satisfaction checks and must-call LUBs that had to be computed.
+   * Incremented only if the {@link #COUNT_MUST_CALL} option was supplied.
+   */
+  int numMustCallCacheMisses = 0;
+
+  @Override
+  public void initChecker() {
+    super.initChecker();
+    mustCallStateLimit = getNonNegativeLongOption(MUST_CALL_STATE_LIMIT);
+    mustCallTimeLimit = getNonNegativeLongOption(MUST_CALL_TIME_LIMIT);
+    String resultCacheFile = getOption(MUST_CALL_RESULT_CACHE);
+    if (resultCacheFile != null) {
+      mustCallResultCache = new MustCallResultCache(resultCacheFile, this);
+    }
+    String statsFile = getOption(MUST_CALL_STATS);
+    if (statsFile != null) {
+      mustCallStats = new MustCallStats(statsFile);
+    }
+    String summariesFile = getOption(OWNERSHIP_SUMMARIES);
+    if (summariesFile != null) {
+      ownershipSummaries = new OwnershipSummaries(summariesFile, this);
+    }
+  }
+
+  /**
+   * Returns the value of the given option, which must be a non-negative integer if it is supplied.
+   *
+   * @param option the name of an option
+   * @return the value of {@code option}, or -1 if it was not supplied
+   */
+  private long getNonNegativeLongOption(String option) {
+    String value = getOption(option);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      long result = Long.parseLong(value);
+      if (result >= 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // fall through to the error below
+    }
+    throw new UserError("-A%s must be a non-negative integer, but was: %s", option, value);
+  }
+
   @Override
   protected LinkedHashSet<Class<? extends BaseTypeChecker>> getImmediateSubcheckerClasses() {
     LinkedHashSet<Class<? extends BaseTypeChecker>> checkers =
@@ -97,6 +259,9 @@ public class ObjectConstructionChecker extends CalledMethodsChecker {
     messages.setProperty(
         "reset.not.owning",
         "Calling this method resets the must-call obligations of the expression %s, which is non-owning. Either annotate its declaration with an @Owning annotation or write a corresponding @CreatesObligation annotation on the method that encloses this statement.\n");
+    messages.setProperty(
+        "must.call.budget.exceeded",
+        "The must-call consistency check of %s exceeded its limit of %s, so it joined the remaining states of the analysis and treated each variable that was tracked on only some of the joined paths as untracked. Some errors reported in this method may be false positives.\n");
     messages.setProperty(
         "creates.obligation.override.invalid",
         "Method %s cannot override method %s, which defines fewer @CreatesObligation targets.\nfound:    %s\nrequired: %s\n");
@@ -128,6 +293,30 @@ public class ObjectConstructionChecker extends CalledMethodsChecker {
           WARNING,
           "Successfully verified %d must call obligation(s).%n",
           numMustCall - numMustCallFailed);
+      message(
+          WARNING,
+          "Processed %d CFG block(s) in the must call consistency check.%n",
+          numMustCallBlockVisits);
+      message(
+          WARNING,
+          "Ran the must call consistency check on %d method(s); skipped %d method(s) without must"
+              + " call obligations.%n",
+          numMustCallMethodsAnalyzed,
+          numMustCallMethodsSkipped);
+      message(
+          WARNING,
+          "Must call memo tables: %d hit(s), %d miss(es).%n",
+          numMustCallCacheHits,
+          numMustCallCacheMisses);
+    }
+    if (mustCallResultCache != null) {
+      mustCallResultCache.write();
+    }
+    if (ownershipSummaries != null) {
+      ownershipSummaries.write();
+    }
+    if (mustCallStats != null && !mustCallStats.close()) {
+      message(WARNING, "Could not write must call statistics to %s%n", mustCallStats.getFile());
     }
     super.typeProcessingOver();
   }
@@ -6,8 +6,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.VariableElement;
@@ -200,12 +198,12 @@ public class ObjectConstructionTransfer extends CalledMethodsTransfer {
     List<String> currentMethods =
         AnnotationUtils.getElementValueArray(
             type, atypeFactory.calledMethodsValueElement, String.class);
-    List<String> newList =
-        Stream.concat(Arrays.stream(methodNames), currentMethods.stream())
-            .collect(Collectors.toList());
-
-    AnnotationMirror newType = atypeFactory.createCalledMethods(newList.toArray(new String[0]));
-    return newType;
+    if (currentMethods.containsAll(Arrays.asList(methodNames))) {
+      return type;
+    }
+    // getElementValueArray returns a new, modifiable list.
+    Collections.addAll(currentMethods, methodNames);
+    return atypeFactory.createAccumulatorAnnotation(currentMethods);
   }
 
   private void handleEnsuresCalledMethodVarArgs(
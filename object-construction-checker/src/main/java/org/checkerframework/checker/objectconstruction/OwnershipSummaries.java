@@ -0,0 +1,314 @@
+package org.checkerframework.checker.objectconstruction;
+
+import static javax.tools.Diagnostic.Kind.WARNING;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.ElementUtils;
+
+/**
+ * An on-disk store of ownership summaries, used when the {@link
+ * ObjectConstructionChecker#OWNERSHIP_SUMMARIES} option is supplied.
+ *
+ * <p>The summary of a method records which of its parameters it closes: the parameters that are
+ * not {@code @Owning} or {@code @MustCallAlias}, that have a must-call obligation, that the method
+ * never reassigns, and whose obligation is satisfied on every normal and exceptional exit of the
+ * method. {@link MustCallInvokedChecker} computes the summary of each method that it checks, and
+ * treats passing a tracked local to a parameter that a callee closes like passing it to an
+ * {@code @Owning} parameter.
+ *
+ * <p>Only the summaries of methods that cannot be overridden are used: constructors, and static,
+ * private and final methods and the methods of final classes. A call to any other method may run
+ * an override that does not close the parameter.
+ *
+ * <p>A compilation only uses the summaries read from the file, which were computed by previous
+ * compilations, so its results do not depend on the order in which javac analyzes its classes.
+ * Each summary is stored with a hash of the source text of its method, and a summary is ignored if
+ * the method is compiled by the current compilation and its source text has changed since. The
+ * summaries that a compilation computes are written back when type processing is over, together
+ * with the summaries read from the file for methods it did not check, such as methods of other
+ * modules. Since a summary only reflects the calls that a method makes itself, a parameter that a
+ * method passes on to a closing callee is not summarized as closed.
+ *
+ * <p>The file is binary: a header, which identifies the build of the checker and its stub files
+ * like the header of the {@link MustCallResultCache}, then the number of summaries, then each
+ * method, the hash of its source text and the bitmask of its closed parameters. A file with another
+ * header is ignored.
+ */
+/* package-private */ final class OwnershipSummaries {
+
+  /**
+   * The start of the header of a summary file. Must be changed whenever the format of the file or
+   * the meaning of a summary changes, so that old summary files are ignored.
+   */
+  private static final String FORMAT = "ownershipSummaries 2";
+
+  /**
+   * The number of parameters that a summary can describe. The later parameters of a method are
+   * never summarized as closed.
+   */
+  static final int MAX_PARAMETERS = Integer.SIZE;
+
+  /** The file that the summaries are read from and written to. */
+  private final Path file;
+
+  /**
+   * The header of the summary file, or null if the checker and its stub files could not be read,
+   * in which case no summaries are used or written.
+   */
+  private final @Nullable String header;
+
+  /** The summaries read from {@link #file}, keyed by {@link #key(ExecutableElement)}. */
+  private final Map<String, Summary> previousSummaries;
+
+  /** The summaries computed by this compilation, keyed by {@link #key(ExecutableElement)}. */
+  private final Map<String, Summary> currentSummaries = new HashMap<>();
+
+  /**
+   * The bitmask of the parameters that each method that has been looked up by {@link
+   * #closesParameter} closes according to a usable summary.
+   */
+  private final Map<ExecutableElement, Integer> closedParameters = new IdentityHashMap<>();
+
+  /** The checker. */
+  private final ObjectConstructionChecker checker;
+
+  /** Used to find the source text of methods. */
+  private final Trees trees;
+
+  /**
+   * Creates a summary store backed by the given file, and reads the file if it exists. A file that
+   * cannot be read, or that was written by another build of the checker or with other stub files,
+   * is ignored.
+   *
+   * @param fileName the name of the summary file
+   * @param checker the checker
+   */
+  OwnershipSummaries(String fileName, ObjectConstructionChecker checker) {
+    this.file = Paths.get(fileName);
+    this.checker = checker;
+    this.trees = Trees.instance(checker.getProcessingEnvironment());
+    String header;
+    try {
+      header = FORMAT + " " + MustCallResultCache.checkerHash(checker);
+    } catch (IOException e) {
+      checker.message(WARNING, "Not using ownership summaries %s: %s%n", file, e);
+      header = null;
+    }
+    this.header = header;
+    Map<String, Summary> summaries;
+    try {
+      summaries = header == null ? new HashMap<>() : read(file, header);
+    } catch (NoSuchFileException e) {
+      summaries = new HashMap<>();
+    } catch (IOException | RuntimeException e) {
+      checker.message(WARNING, "Ignoring unreadable ownership summaries %s: %s%n", file, e);
+      summaries = new HashMap<>();
+    }
+    this.previousSummaries = summaries;
+  }
+
+  /**
+   * Returns true if a previous compilation found that the given method closes its parameter with
+   * the given index, the method cannot be overridden, and its source text has not changed since if
+   * it is compiled by this compilation.
+   *
+   * @param method a method or constructor
+   * @param paramIndex the index of a parameter of {@code method}
+   * @return true if {@code method} is known to close its parameter {@code paramIndex}
+   */
+  boolean closesParameter(ExecutableElement method, int paramIndex) {
+    if (paramIndex >= MAX_PARAMETERS) {
+      return false;
+    }
+    Integer closed = closedParameters.get(method);
+    if (closed == null) {
+      closed = 0;
+      Summary summary = cannotBeOverridden(method) ? previousSummaries.get(key(method)) : null;
+      if (summary != null) {
+        String sourceHash = sourceHash(method);
+        if (sourceHash == null || sourceHash.equals(summary.sourceHash)) {
+          closed = summary.closedParameters;
+        }
+      }
+      closedParameters.put(method, closed);
+    }
+    return (closed & (1 << paramIndex)) != 0;
+  }
+
+  /**
+   * Records the summary of a method checked by this compilation. It is used by later compilations.
+   * Nothing is recorded for a method that can be overridden, since its summary would not be used.
+   *
+   * @param method a method or constructor
+   * @param closedParameters a bitmask of the indices of the parameters that {@code method} closes
+   */
+  void record(ExecutableElement method, int closedParameters) {
+    if (!cannotBeOverridden(method)) {
+      return;
+    }
+    String sourceHash = sourceHash(method);
+    currentSummaries.put(
+        key(method), new Summary(sourceHash == null ? "" : sourceHash, closedParameters));
+  }
+
+  /**
+   * Returns true if every call to the given method runs its own body: if it is a constructor, a
+   * static, private or final method, or a method of a final class.
+   *
+   * @param method a method or constructor
+   * @return true if {@code method} cannot be overridden
+   */
+  private static boolean cannotBeOverridden(ExecutableElement method) {
+    if (method.getKind() == ElementKind.CONSTRUCTOR) {
+      return true;
+    }
+    Set<Modifier> modifiers = method.getModifiers();
+    if (modifiers.contains(Modifier.STATIC)
+        || modifiers.contains(Modifier.PRIVATE)
+        || modifiers.contains(Modifier.FINAL)) {
+      return true;
+    }
+    Element enclosingClass = method.getEnclosingElement();
+    return enclosingClass != null && enclosingClass.getModifiers().contains(Modifier.FINAL);
+  }
+
+  /**
+   * Returns a hash of the source text of the given method, if this compilation compiles it.
+   *
+   * @param method a method or constructor
+   * @return the hash of the source text of {@code method}, or null if it is not compiled by this
+   *     compilation or its source text cannot be read
+   */
+  private @Nullable String sourceHash(ExecutableElement method) {
+    TreePath path = trees.getPath(method);
+    if (path == null) {
+      return null;
+    }
+    CompilationUnitTree root = path.getCompilationUnit();
+    SourcePositions positions = trees.getSourcePositions();
+    long start = positions.getStartPosition(root, path.getLeaf());
+    long end = positions.getEndPosition(root, path.getLeaf());
+    CharSequence source;
+    try {
+      source = root.getSourceFile().getCharContent(true);
+    } catch (IOException e) {
+      return null;
+    }
+    if (start < 0 || end > source.length() || start >= end) {
+      return null;
+    }
+    return MustCallResultCache.hash(source.subSequence((int) start, (int) end));
+  }
+
+  /**
+   * Returns the key of the summary of a method: the qualified name of its class, and its name and
+   * parameter types.
+   *
+   * @param method a method or constructor
+   * @return the key of the summary of {@code method}
+   */
+  private static String key(ExecutableElement method) {
+    TypeElement enclosingClass = ElementUtils.enclosingTypeElement(method);
+    return (enclosingClass == null ? "" : enclosingClass.getQualifiedName()) + "#" + method;
+  }
+
+  /**
+   * Writes the summaries read from the file and those computed by this compilation, which replace
+   * them, to the summary file. Failures are reported as warnings, since they do not affect the
+   * results of the compilation.
+   */
+  void write() {
+    if (header == null) {
+      return;
+    }
+    Map<String, Summary> summaries = new TreeMap<>(previousSummaries);
+    summaries.putAll(currentSummaries);
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+        out.writeUTF(header);
+        out.writeInt(summaries.size());
+        for (Map.Entry<String, Summary> summary : summaries.entrySet()) {
+          out.writeUTF(summary.getKey());
+          out.writeUTF(summary.getValue().sourceHash);
+          out.writeInt(summary.getValue().closedParameters);
+        }
+      }
+    } catch (IOException e) {
+      checker.message(WARNING, "Could not write ownership summaries %s: %s%n", file, e);
+    }
+  }
+
+  /**
+   * Reads a summary file.
+   *
+   * @param file a summary file
+   * @param header the expected header of {@code file}
+   * @return the summaries stored in {@code file}; empty if its header is not {@code header}
+   * @throws IOException if {@code file} cannot be read
+   */
+  private static Map<String, Summary> read(Path file, String header) throws IOException {
+    Map<String, Summary> summaries = new HashMap<>();
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (!header.equals(in.readUTF())) {
+        return summaries;
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        String key = in.readUTF();
+        String sourceHash = in.readUTF();
+        summaries.put(key, new Summary(sourceHash, in.readInt()));
+      }
+    }
+    return summaries;
+  }
+
+  /** The summary of a method. */
+  private static final class Summary {
+
+    /** The hash of the source text of the method, or the empty string if it was not available. */
+    final String sourceHash;
+
+    /** A bitmask of the indices of the parameters that the method closes. */
+    final int closedParameters;
+
+    /**
+     * Creates a new summary.
+     *
+     * @param sourceHash the hash of the source text of the method
+     * @param closedParameters a bitmask of the indices of the parameters that the method closes
+     */
+    Summary(String sourceHash, int closedParameters) {
+      this.sourceHash = sourceHash;
+      this.closedParameters = closedParameters;
+    }
+  }
+}
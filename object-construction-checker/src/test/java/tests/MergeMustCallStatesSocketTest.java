@@ -0,0 +1,27 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.checker.objectconstruction.ObjectConstructionChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized;
+
+public class MergeMustCallStatesSocketTest extends CheckerFrameworkPerDirectoryTest {
+  public MergeMustCallStatesSocketTest(List<File> testFiles) {
+    super(
+        testFiles,
+        ObjectConstructionChecker.class,
+        "socket",
+        "-Anomsgtext",
+        "-AuseValueChecker",
+        "-AcheckMustCall",
+        "-AcountMustCall",
+        "-AmergeMustCallStates",
+        "-nowarn");
+  }
+
+  @Parameterized.Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"socket"};
+  }
+}
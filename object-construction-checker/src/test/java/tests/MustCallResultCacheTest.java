@@ -0,0 +1,156 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the {@code tests/mustcall} directory twice with the same, initially absent, result cache
+ * file, and checks that the second compilation reports the diagnostics of every method from the
+ * cache, and that it reports exactly the same diagnostics as the first compilation. Also checks
+ * that a compilation of some of the files keeps the results of the others in the cache file.
+ */
+public class MustCallResultCacheTest {
+
+  /** A directory for the cache and statistics files. */
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void mustcall() throws IOException {
+    File[] javaFiles = new File("tests", "mustcall").listFiles((d, name) -> name.endsWith(".java"));
+    Assert.assertNotNull(javaFiles);
+    Arrays.sort(javaFiles);
+    List<File> files = Arrays.asList(javaFiles);
+    File cache = new File(temp.getRoot(), "mustCallResultCache");
+    File firstStats = new File(temp.getRoot(), "first.jsonl");
+    File secondStats = new File(temp.getRoot(), "second.jsonl");
+
+    List<String> first =
+        MustCallStatsRunner.compile(
+            files,
+            "-Anomsgtext",
+            "-AmustCallResultCache=" + cache.getPath(),
+            "-AmustCallStats=" + firstStats.getPath());
+    Assert.assertTrue("no cache file was written", cache.exists());
+    Assert.assertFalse("the first compilation reported no diagnostics", first.isEmpty());
+    Assert.assertEquals(
+        "the first compilation replayed methods from a cache file that did not exist",
+        Collections.emptyList(),
+        methods(firstStats, "1"));
+
+    List<String> second =
+        MustCallStatsRunner.compile(
+            files,
+            "-Anomsgtext",
+            "-AmustCallResultCache=" + cache.getPath(),
+            "-AmustCallStats=" + secondStats.getPath());
+    Assert.assertEquals(
+        "the second compilation checked methods instead of replaying them",
+        Collections.emptyList(),
+        methods(secondStats, "0"));
+    Assert.assertFalse(
+        "the second compilation replayed nothing", methods(secondStats, "1").isEmpty());
+    Assert.assertEquals(first, second);
+  }
+
+  @Test
+  public void partialCompilations() throws IOException {
+    File closed =
+        write(
+            "Closed.java",
+            "import java.io.IOException;",
+            "import java.net.Socket;",
+            "class Closed {",
+            "  void closed() throws IOException {",
+            "    Socket s = new Socket();",
+            "    s.close();",
+            "  }",
+            "}");
+    File changed = write("Changed.java", "class Changed {", "  void changed() {}", "}");
+    File cache = new File(temp.getRoot(), "mustCallResultCache");
+    MustCallStatsRunner.compile(
+        Arrays.asList(closed, changed), "-AmustCallResultCache=" + cache.getPath());
+    long cachedMethods = cachedMethods(cache);
+
+    // Only the results of the recompiled file are replaced.
+    write("Changed.java", "class Changed {", "  void changed(int i) {}", "}");
+    MustCallStatsRunner.compile(
+        Collections.singletonList(changed), "-AmustCallResultCache=" + cache.getPath());
+    Assert.assertEquals(cachedMethods, cachedMethods(cache));
+
+    File stats = new File(temp.getRoot(), "stats.jsonl");
+    MustCallStatsRunner.compile(
+        Collections.singletonList(closed),
+        "-AmustCallResultCache=" + cache.getPath(),
+        "-AmustCallStats=" + stats.getPath());
+    Assert.assertEquals(
+        "the results of a file that was not recompiled were dropped",
+        Collections.emptyList(),
+        methods(stats, "0"));
+    Assert.assertFalse("nothing was replayed", methods(stats, "1").isEmpty());
+  }
+
+  /**
+   * Writes a source file to the temporary directory.
+   *
+   * @param name the name of the file
+   * @param lines the lines of the file
+   * @return the file
+   * @throws IOException if the file cannot be written
+   */
+  private File write(String name, String... lines) throws IOException {
+    File file = new File(temp.getRoot(), name);
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    return file;
+  }
+
+  /**
+   * Returns the number of methods whose results are stored in the given cache file.
+   *
+   * @param cache a cache file
+   * @return the number of methods in {@code cache}
+   * @throws IOException if the file cannot be read
+   */
+  private static long cachedMethods(File cache) throws IOException {
+    return Files.readAllLines(cache.toPath(), StandardCharsets.UTF_8).stream()
+        .filter(line -> line.startsWith("M\t"))
+        .count();
+  }
+
+  /**
+   * Returns the methods, excluding lambdas and initializers, whose {@code replayed} field in the
+   * given statistics file has the given value.
+   *
+   * @param statsFile a statistics file
+   * @param replayed {@code "1"} for the methods whose diagnostics were replayed from the cache, or
+   *     {@code "0"} for the others
+   * @return the file, line and name of each such method
+   * @throws IOException if the file cannot be read
+   */
+  private static List<String> methods(File statsFile, String replayed) throws IOException {
+    List<String> result = new ArrayList<>();
+    for (Map<String, String> record : MustCallStatsRunner.readRecords(statsFile)) {
+      if (record.get("type").equals("method")
+          && record.get("kind").equals("method")
+          && record.get("replayed").equals(replayed)) {
+        result.add(
+            new File(record.get("file")).getName()
+                + ":"
+                + record.get("line")
+                + " "
+                + record.get("name"));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,145 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the cost of the must-call consistency check grows within known bounds as the methods
+ * that it checks grow. Each test generates two methods with {@link SyntheticResourceMethod}, the
+ * second of which is twice as large as the first in one dimension, checks them, and compares the
+ * number of worklist pops and of distinct states reported by {@code -AmustCallStats}. These
+ * counters are deterministic, so the bounds are not affected by the speed of the machine.
+ *
+ * <p>The default mode of the check is path-sensitive, so sequential branches and conditional
+ * expressions are expected to be exponential in it; they are only bounded in the modes that join
+ * states. When slicing, each allocation is analyzed over the whole method, so methods that grow
+ * both in allocations and in size are expected to be quadratic.
+ */
+public class MustCallScalingTest {
+
+  /** The directory in which the methods are generated. */
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void resourcesScaleLinearly() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().resources(8),
+        new SyntheticResourceMethod().resources(16),
+        2.5);
+  }
+
+  @Test
+  public void branchDepthScalesQuadratically() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().resources(2).branchDepth(8),
+        new SyntheticResourceMethod().resources(2).branchDepth(16),
+        5.0);
+  }
+
+  @Test
+  public void loopNestingScalesLinearly() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().resources(2).loopNesting(4),
+        new SyntheticResourceMethod().resources(2).loopNesting(8),
+        2.5);
+  }
+
+  @Test
+  public void tryCatchesScaleLinearly() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().resources(4).tryCatches(8),
+        new SyntheticResourceMethod().resources(4).tryCatches(16),
+        2.5);
+  }
+
+  @Test
+  public void branchesScaleQuadraticallyWhenMerging() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().resources(8).branches(8),
+        new SyntheticResourceMethod().resources(16).branches(16),
+        5.0,
+        "-AmergeMustCallStates");
+  }
+
+  @Test
+  public void ternariesScaleLinearlyWhenMerging() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().ternaries(8),
+        new SyntheticResourceMethod().ternaries(16),
+        2.5,
+        "-AmergeMustCallStates");
+  }
+
+  @Test
+  public void branchesScaleQuadraticallyWhenSlicing() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().resources(8).branches(8),
+        new SyntheticResourceMethod().resources(16).branches(16),
+        5.0,
+        "-AsliceMustCallObligations");
+  }
+
+  @Test
+  public void ternariesScaleQuadraticallyWhenSlicing() throws IOException {
+    assertGrowth(
+        new SyntheticResourceMethod().ternaries(8),
+        new SyntheticResourceMethod().ternaries(16),
+        5.0,
+        "-AsliceMustCallObligations");
+  }
+
+  /**
+   * Checks a small and a large method, and fails if the number of worklist pops or of distinct
+   * states of the large method is more than {@code maxRatio} times that of the small method.
+   *
+   * @param small the small method
+   * @param large the large method
+   * @param maxRatio the largest allowed ratio between the counters of the two methods
+   * @param options additional options for the checker
+   * @throws IOException if the methods cannot be written or the statistics cannot be read
+   */
+  private void assertGrowth(
+      SyntheticResourceMethod small,
+      SyntheticResourceMethod large,
+      double maxRatio,
+      String... options)
+      throws IOException {
+    List<File> files = new ArrayList<>();
+    files.add(write("Small", small));
+    files.add(write("Large", large));
+    Map<String, MustCallStatsRunner.Counts> counts =
+        MustCallStatsRunner.run(files, new File(temp.getRoot(), "stats.jsonl"), options);
+    MustCallStatsRunner.Counts smallCounts = counts.get("Small.java Small#run");
+    MustCallStatsRunner.Counts largeCounts = counts.get("Large.java Large#run");
+    Assert.assertNotNull("no statistics for Small#run: " + counts, smallCounts);
+    Assert.assertNotNull("no statistics for Large#run: " + counts, largeCounts);
+    String message = "Small#run: " + smallCounts + "; Large#run: " + largeCounts;
+    Assert.assertTrue(
+        message, largeCounts.worklistPops <= maxRatio * Math.max(1, smallCounts.worklistPops));
+    Assert.assertTrue(
+        message, largeCounts.distinctStates <= maxRatio * Math.max(1, smallCounts.distinctStates));
+  }
+
+  /**
+   * Generates a class and writes it to a file in {@link #temp}.
+   *
+   * @param className the name of the class
+   * @param method the method of the class
+   * @return the file
+   * @throws IOException if the file cannot be written
+   */
+  private File write(String className, SyntheticResourceMethod method) throws IOException {
+    File file = new File(temp.getRoot(), className + ".java");
+    Files.write(file.toPath(), method.generate(className).getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
@@ -0,0 +1,157 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compares the number of worklist pops and of distinct states of the must-call consistency check
+ * on each method of a test directory with the counts recorded in the {@code state-counts.txt} file
+ * of the directory, and fails if a count grew by more than {@link #TOLERANCE}. Unlike timings,
+ * these counts are deterministic, so an increase means that a change made the check do more work.
+ *
+ * <p>To record the counts again after an intended change, or to create a missing file, run
+ *
+ * <pre>{@code ./gradlew :object-construction-checker:test --tests tests.MustCallStateCountTest
+ *     -PupdateStateCounts}</pre>
+ *
+ * which sets the {@code updateStateCounts} system property, and commit the updated files. The
+ * test fails if a directory has no {@code state-counts.txt} file.
+ */
+public class MustCallStateCountTest {
+
+  /** The name of the file, in each test directory, that holds the expected counts. */
+  private static final String COUNTS_FILE = "state-counts.txt";
+
+  /** The fraction by which a count can grow before the test fails. */
+  private static final double TOLERANCE = 0.1;
+
+  /** The number by which a count can grow before the test fails, for very small counts. */
+  private static final long SLACK = 2;
+
+  /** A directory for the statistics file. */
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void mustcall() throws IOException {
+    checkCounts("mustcall");
+  }
+
+  @Test
+  public void socket() throws IOException {
+    checkCounts("socket", "-AuseValueChecker");
+  }
+
+  /**
+   * Checks the Java files of a test directory, and compares the counts of each method with the
+   * expected counts, or records them if the {@code updateStateCounts} system property is set.
+   *
+   * @param testDir the name of the test directory, relative to {@code tests}
+   * @param options additional options for the checker, as used by the other tests of the
+   *     directory
+   * @throws IOException if the files cannot be read or written
+   */
+  private void checkCounts(String testDir, String... options) throws IOException {
+    File dir = new File("tests", testDir);
+    File countsFile = new File(dir, COUNTS_FILE);
+    File[] javaFiles = dir.listFiles((d, name) -> name.endsWith(".java"));
+    Assert.assertNotNull("not a directory: " + dir, javaFiles);
+    Arrays.sort(javaFiles);
+    Map<String, MustCallStatsRunner.Counts> actual =
+        MustCallStatsRunner.run(
+            Arrays.asList(javaFiles), new File(temp.getRoot(), "stats.jsonl"), options);
+
+    if (Boolean.getBoolean("updateStateCounts")) {
+      write(countsFile, actual);
+      return;
+    }
+    Assert.assertTrue(
+        "no "
+            + countsFile
+            + "; run this test with -PupdateStateCounts and commit the file",
+        countsFile.exists());
+
+    Map<String, MustCallStatsRunner.Counts> expected = read(countsFile);
+    List<String> regressions = new ArrayList<>();
+    for (Map.Entry<String, MustCallStatsRunner.Counts> entry : actual.entrySet()) {
+      MustCallStatsRunner.Counts expectedCounts = expected.get(entry.getKey());
+      MustCallStatsRunner.Counts actualCounts = entry.getValue();
+      if (expectedCounts == null) {
+        regressions.add(entry.getKey() + ": not in " + countsFile);
+      } else if (exceeds(actualCounts.worklistPops, expectedCounts.worklistPops)
+          || exceeds(actualCounts.distinctStates, expectedCounts.distinctStates)) {
+        regressions.add(
+            entry.getKey() + ": expected " + expectedCounts + " but was " + actualCounts);
+      }
+    }
+    Assert.assertTrue(
+        "The consistency check does more work than recorded in "
+            + countsFile
+            + "; if this is intended, run with -PupdateStateCounts:\n"
+            + String.join("\n", regressions),
+        regressions.isEmpty());
+  }
+
+  /**
+   * Returns whether a count grew by more than the tolerance.
+   *
+   * @param actual the actual count
+   * @param expected the expected count
+   * @return true if {@code actual} is too large
+   */
+  private static boolean exceeds(long actual, long expected) {
+    return actual > expected + Math.max(SLACK, (long) (expected * TOLERANCE));
+  }
+
+  /**
+   * Reads a counts file. Each line that is not empty and does not start with {@code #} holds a
+   * method, its number of worklist pops and its number of distinct states, separated by tabs.
+   *
+   * @param file the file to read
+   * @return the counts of each method
+   * @throws IOException if the file cannot be read
+   */
+  private static Map<String, MustCallStatsRunner.Counts> read(File file) throws IOException {
+    Map<String, MustCallStatsRunner.Counts> result = new TreeMap<>();
+    for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\t");
+      Assert.assertEquals("malformed line in " + file + ": " + line, 3, fields.length);
+      result.put(
+          fields[0],
+          new MustCallStatsRunner.Counts(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+    }
+    return result;
+  }
+
+  /**
+   * Writes a counts file, in the format read by {@link #read}.
+   *
+   * @param file the file to write
+   * @param counts the counts of each method
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(File file, Map<String, MustCallStatsRunner.Counts> counts)
+      throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add("# Generated by MustCallStateCountTest; see its documentation.");
+    lines.add("# method\tworklist pops\tdistinct states");
+    for (Map.Entry<String, MustCallStatsRunner.Counts> entry : counts.entrySet()) {
+      MustCallStatsRunner.Counts c = entry.getValue();
+      lines.add(entry.getKey() + "\t" + c.worklistPops + "\t" + c.distinctStates);
+    }
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,25 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.checker.objectconstruction.ObjectConstructionChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+public class MustCallStateLimitTest extends CheckerFrameworkPerDirectoryTest {
+  public MustCallStateLimitTest(List<File> testFiles) {
+    super(
+        testFiles,
+        ObjectConstructionChecker.class,
+        "mustcall-limit",
+        "-Anomsgtext",
+        "-AcheckMustCall",
+        "-AmustCallStateLimit=20",
+        "-nowarn");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"mustcall-limit"};
+  }
+}
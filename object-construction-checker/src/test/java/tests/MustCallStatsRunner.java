@@ -0,0 +1,228 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.objectconstruction.ObjectConstructionChecker;
+import org.junit.Assert;
+
+/**
+ * Runs the Object Construction Checker in-process with the {@code -AcheckMustCall} option, and
+ * reads the records that it writes with the {@code -AmustCallStats} option, including the
+ * deterministic cost counters of the must-call consistency check for each method.
+ */
+final class MustCallStatsRunner {
+
+  /** The deterministic counters of the consistency check for a method. */
+  static final class Counts {
+    /** The number of states processed by the check. */
+    final long worklistPops;
+
+    /** The number of distinct states reached by the check. */
+    final long distinctStates;
+
+    /**
+     * Creates new counts.
+     *
+     * @param worklistPops the number of states processed by the check
+     * @param distinctStates the number of distinct states reached by the check
+     */
+    Counts(long worklistPops, long distinctStates) {
+      this.worklistPops = worklistPops;
+      this.distinctStates = distinctStates;
+    }
+
+    @Override
+    public String toString() {
+      return worklistPops + " pops, " + distinctStates + " states";
+    }
+  }
+
+  /** Do not instantiate. */
+  private MustCallStatsRunner() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Checks the given files, and returns the counters of each method. The methods are identified
+   * by the name of their file and by their class and method name, such as {@code "Foo.java
+   * Foo#bar"}; the counters of overloads and of the lambdas and initializers of a class are
+   * summed.
+   *
+   * @param files the files to check
+   * @param statsFile the file to write the statistics to
+   * @param options additional options for the checker, such as {@code -AmergeMustCallStates}
+   * @return the counters of each method, sorted by the method
+   * @throws IOException if the statistics cannot be read
+   */
+  static Map<String, Counts> run(List<File> files, File statsFile, String... options)
+      throws IOException {
+    List<String> args = new ArrayList<>();
+    args.add("-AmustCallStats=" + statsFile.getPath());
+    Collections.addAll(args, options);
+    compile(files, args.toArray(new String[0]));
+
+    Map<String, Counts> result = new TreeMap<>();
+    for (Map<String, String> record : readRecords(statsFile)) {
+      if (!record.get("type").equals("method")) {
+        continue;
+      }
+      String key = new File(record.get("file")).getName() + " " + record.get("name");
+      Counts counts =
+          new Counts(
+              Long.parseLong(record.get("worklistPops")),
+              Long.parseLong(record.get("distinctStates")));
+      Counts previous = result.get(key);
+      if (previous != null) {
+        counts =
+            new Counts(
+                previous.worklistPops + counts.worklistPops,
+                previous.distinctStates + counts.distinctStates);
+      }
+      result.put(key, counts);
+    }
+    return result;
+  }
+
+  /**
+   * Checks the given files, and returns the diagnostics of the compiler, each as the name of its
+   * file, its line and column, its kind and its message. The diagnostics are sorted, so that two
+   * compilations that report the same diagnostics in different orders return equal lists.
+   *
+   * @param files the files to check
+   * @param options additional options for the checker
+   * @return the diagnostics, sorted
+   * @throws IOException if the file manager cannot be closed
+   */
+  static List<String> compile(List<File> files, String... options) throws IOException {
+    List<String> args = new ArrayList<>();
+    args.add("-proc:only");
+    args.add("-processor");
+    args.add(ObjectConstructionChecker.class.getName());
+    args.add("-classpath");
+    args.add(System.getProperty("java.class.path"));
+    args.add("-AcheckMustCall");
+    Collections.addAll(args, options);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    Iterable<? extends JavaFileObject> sources = fileManager.getJavaFileObjectsFromFiles(files);
+    compiler.getTask(null, fileManager, diagnostics, args, null, sources).call();
+    fileManager.close();
+
+    List<String> result = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+      String file = d.getSource() == null ? "" : new File(d.getSource().getName()).getName();
+      result.add(
+          file
+              + ":"
+              + d.getLineNumber()
+              + ":"
+              + d.getColumnNumber()
+              + ": "
+              + d.getKind()
+              + ": "
+              + d.getMessage(Locale.ROOT));
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Reads the records of a statistics file written by the {@code -AmustCallStats} option. Each
+   * line is a JSON object whose values are strings or numbers.
+   *
+   * @param statsFile the statistics file
+   * @return the fields of each record, in the order of the file; numbers are returned as written
+   * @throws IOException if the file cannot be read
+   */
+  static List<Map<String, String>> readRecords(File statsFile) throws IOException {
+    List<Map<String, String>> records = new ArrayList<>();
+    for (String line : Files.readAllLines(statsFile.toPath(), StandardCharsets.UTF_8)) {
+      records.add(parseRecord(line));
+    }
+    return records;
+  }
+
+  /**
+   * Parses a JSON object whose values are strings or numbers.
+   *
+   * @param line a JSON object, on a single line
+   * @return its fields, in order
+   */
+  private static Map<String, String> parseRecord(String line) {
+    Map<String, String> fields = new LinkedHashMap<>();
+    Assert.assertTrue("not a JSON object: " + line, line.startsWith("{") && line.endsWith("}"));
+    int[] pos = {1};
+    while (pos[0] < line.length() - 1) {
+      if (!fields.isEmpty()) {
+        expect(line, pos, ',');
+      }
+      String name = parseString(line, pos);
+      expect(line, pos, ':');
+      String value;
+      if (line.charAt(pos[0]) == '"') {
+        value = parseString(line, pos);
+      } else {
+        int start = pos[0];
+        while (pos[0] < line.length() - 1 && line.charAt(pos[0]) != ',') {
+          pos[0]++;
+        }
+        value = line.substring(start, pos[0]);
+      }
+      Assert.assertNull("duplicate field " + name + ": " + line, fields.put(name, value));
+    }
+    return fields;
+  }
+
+  /**
+   * Parses a JSON string.
+   *
+   * @param line a JSON object
+   * @param pos a one-element array that holds the position of the opening quote, and that is set
+   *     to the position after the closing quote
+   * @return the value of the string
+   */
+  private static String parseString(String line, int[] pos) {
+    expect(line, pos, '"');
+    StringBuilder sb = new StringBuilder();
+    char c;
+    while ((c = line.charAt(pos[0]++)) != '"') {
+      if (c == '\\') {
+        c = line.charAt(pos[0]++);
+        if (c == 'u') {
+          c = (char) Integer.parseInt(line.substring(pos[0], pos[0] + 4), 16);
+          pos[0] += 4;
+        }
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Checks that a JSON object has the given character at the given position, and skips it.
+   *
+   * @param line a JSON object
+   * @param pos a one-element array that holds the position, and that is incremented
+   * @param expected the expected character
+   */
+  private static void expect(String line, int[] pos, char expected) {
+    Assert.assertEquals("malformed JSON object: " + line, expected, line.charAt(pos[0]++));
+  }
+}
@@ -0,0 +1,156 @@
+package tests;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.javacutil.TreePathUtil;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the {@code tests/mustcall} directory with the {@code -AmustCallStats} option, and checks
+ * that the statistics file has one well-formed record for each method declared in the directory
+ * and one for each compilation unit.
+ */
+public class MustCallStatsTest {
+
+  /** The fields of a method record whose values are numbers of milliseconds. */
+  private static final List<String> TIME_FIELDS =
+      Arrays.asList("mustCallDataflowMs", "calledMethodsDataflowMs", "consistencyCheckMs");
+
+  /** The fields of a method record whose values are counts. */
+  private static final List<String> COUNT_FIELDS =
+      Arrays.asList(
+          "line",
+          "worklistPops",
+          "distinctStates",
+          "maxTrackedAliasSets",
+          "memoHits",
+          "memoMisses",
+          "replayed");
+
+  /** A directory for the statistics file. */
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void mustcall() throws IOException {
+    File[] javaFiles = new File("tests", "mustcall").listFiles((d, name) -> name.endsWith(".java"));
+    Assert.assertNotNull(javaFiles);
+    Arrays.sort(javaFiles);
+    List<File> files = Arrays.asList(javaFiles);
+    File statsFile = new File(temp.getRoot(), "stats.jsonl");
+    MustCallStatsRunner.compile(files, "-Anomsgtext", "-AmustCallStats=" + statsFile.getPath());
+
+    Set<String> methods = new TreeSet<>();
+    Map<String, Integer> methodsPerFile = new HashMap<>();
+    Map<String, Integer> compilationUnitRecords = new HashMap<>();
+    for (Map<String, String> record : MustCallStatsRunner.readRecords(statsFile)) {
+      String file = new File(record.get("file")).getName();
+      switch (record.get("type")) {
+        case "method":
+          for (String field : Arrays.asList("file", "kind", "name")) {
+            Assert.assertNotNull("no " + field + " in " + record, record.get(field));
+          }
+          checkNumbers(record);
+          methodsPerFile.merge(file, 1, Integer::sum);
+          if (record.get("kind").equals("method")) {
+            String method = file + ":" + record.get("line") + " " + record.get("name");
+            Assert.assertTrue("two records for " + method, methods.add(method));
+          }
+          break;
+        case "compilationUnit":
+          Assert.assertNull("two records for " + file, compilationUnitRecords.put(file, 1));
+          checkNumbers(record);
+          Assert.assertEquals(
+              "methods of " + file,
+              String.valueOf(methodsPerFile.getOrDefault(file, 0)),
+              record.get("methods"));
+          break;
+        default:
+          Assert.fail("unexpected record: " + record);
+      }
+    }
+    Assert.assertEquals(methodsPerFile.keySet(), compilationUnitRecords.keySet());
+
+    List<String> missing = new ArrayList<>(declaredMethods(files));
+    missing.removeAll(methods);
+    Assert.assertEquals("methods without a record", Collections.emptyList(), missing);
+  }
+
+  /**
+   * Checks that a record has all the fields that hold times and counts, and that their values are
+   * non-negative numbers.
+   *
+   * @param record a record of the statistics file
+   */
+  private static void checkNumbers(Map<String, String> record) {
+    for (String field : TIME_FIELDS) {
+      Assert.assertNotNull("no " + field + " in " + record, record.get(field));
+      Assert.assertTrue(record.toString(), Double.parseDouble(record.get(field)) >= 0);
+    }
+    for (String field : COUNT_FIELDS) {
+      if (field.equals("line") && record.get("type").equals("compilationUnit")) {
+        continue;
+      }
+      Assert.assertNotNull("no " + field + " in " + record, record.get(field));
+      Assert.assertTrue(record.toString(), Long.parseLong(record.get(field)) >= 0);
+    }
+  }
+
+  /**
+   * Parses the given files, and returns each method or constructor that has a body, in the form
+   * used for the method records of the statistics file: the name of its file, the line on which it
+   * starts, and the names of its class and of the method, such as {@code "Foo.java:3 Foo#bar"}.
+   *
+   * @param files the files to parse
+   * @return the methods declared in {@code files}
+   * @throws IOException if the files cannot be parsed
+   */
+  private static Set<String> declaredMethods(List<File> files) throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    Iterable<? extends JavaFileObject> sources = fileManager.getJavaFileObjectsFromFiles(files);
+    JavacTask task = (JavacTask) compiler.getTask(null, fileManager, null, null, null, sources);
+    Trees trees = Trees.instance(task);
+    Set<String> result = new TreeSet<>();
+    for (CompilationUnitTree root : task.parse()) {
+      String file = new File(root.getSourceFile().getName()).getName();
+      new TreePathScanner<Void, Void>() {
+        @Override
+        public Void visitMethod(MethodTree tree, Void p) {
+          if (tree.getBody() != null) {
+            TreePath path = getCurrentPath();
+            ClassTree classTree = TreePathUtil.enclosingClass(path);
+            long line =
+                root.getLineMap()
+                    .getLineNumber(trees.getSourcePositions().getStartPosition(root, tree));
+            result.add(file + ":" + line + " " + classTree.getSimpleName() + "#" + tree.getName());
+          }
+          return super.visitMethod(tree, p);
+        }
+      }.scan(root, null);
+    }
+    fileManager.close();
+    return result;
+  }
+}
@@ -0,0 +1,131 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles a caller that passes a socket to an unannotated method that closes it, twice, with the
+ * same, initially absent, ownership summary file. The first compilation has no summary of the
+ * callee and reports the socket as leaked; the second one uses the summary written by the first,
+ * except for a callee that can be overridden. A third compilation, after the callee has been
+ * changed so that it no longer closes the socket, ignores its stale summary.
+ */
+public class OwnershipSummariesTest {
+
+  /** A directory for the sources and the summary file. */
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void closingHelper() throws IOException {
+    File closer =
+        write(
+            "Closer.java",
+            "import java.io.IOException;",
+            "import java.net.Socket;",
+            "class Closer {",
+            "  static void closeIt(Socket s) throws IOException {",
+            "    s.close();",
+            "  }",
+            "  static void keepIt(Socket s) {}",
+            "  void closeOverridable(Socket s) throws IOException {",
+            "    s.close();",
+            "  }",
+            "}");
+    File caller =
+        write(
+            "Caller.java",
+            "import java.io.IOException;",
+            "import java.net.Socket;",
+            "class Caller {",
+            "  void closed() throws IOException {",
+            "    Socket s = new Socket();",
+            "    Closer.closeIt(s);",
+            "  }",
+            "  void leaked() {",
+            "    Socket s = new Socket();",
+            "    Closer.keepIt(s);",
+            "  }",
+            "  void overridable(Closer closer) throws IOException {",
+            "    Socket s = new Socket();",
+            "    closer.closeOverridable(s);",
+            "  }",
+            "}");
+    List<File> files = Arrays.asList(closer, caller);
+    File summaries = new File(temp.getRoot(), "ownershipSummaries");
+
+    List<String> first =
+        MustCallStatsRunner.compile(
+            files, "-Anomsgtext", "-AownershipSummaries=" + summaries.getPath());
+    Assert.assertTrue("no summary file was written", summaries.exists());
+    Assert.assertEquals(first.toString(), 3, count(first, "required.method.not.called"));
+
+    List<String> second =
+        MustCallStatsRunner.compile(
+            files, "-Anomsgtext", "-AownershipSummaries=" + summaries.getPath());
+    Assert.assertEquals(second.toString(), 2, count(second, "required.method.not.called"));
+    Assert.assertTrue(second.toString(), reportedAt(second, "Caller.java:9:"));
+    Assert.assertTrue(second.toString(), reportedAt(second, "Caller.java:13:"));
+
+    write(
+        "Closer.java",
+        "import java.io.IOException;",
+        "import java.net.Socket;",
+        "class Closer {",
+        "  static void closeIt(Socket s) throws IOException {}",
+        "  static void keepIt(Socket s) {}",
+        "  void closeOverridable(Socket s) throws IOException {",
+        "    s.close();",
+        "  }",
+        "}");
+    List<String> third =
+        MustCallStatsRunner.compile(
+            files, "-Anomsgtext", "-AownershipSummaries=" + summaries.getPath());
+    Assert.assertEquals(third.toString(), 3, count(third, "required.method.not.called"));
+    Assert.assertTrue(third.toString(), reportedAt(third, "Caller.java:5:"));
+  }
+
+  /**
+   * Writes a source file to the temporary directory.
+   *
+   * @param name the name of the file
+   * @param lines the lines of the file
+   * @return the file
+   * @throws IOException if the file cannot be written
+   */
+  private File write(String name, String... lines) throws IOException {
+    File file = new File(temp.getRoot(), name);
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    return file;
+  }
+
+  /**
+   * Returns the number of diagnostics with the given message key.
+   *
+   * @param diagnostics diagnostics returned by {@link MustCallStatsRunner#compile}
+   * @param messageKey a message key
+   * @return the number of elements of {@code diagnostics} that contain {@code messageKey}
+   */
+  private static long count(List<String> diagnostics, String messageKey) {
+    return diagnostics.stream().filter(d -> d.contains(messageKey)).count();
+  }
+
+  /**
+   * Returns true if a leaked resource is reported at the given location.
+   *
+   * @param diagnostics diagnostics returned by {@link MustCallStatsRunner#compile}
+   * @param location the start of a diagnostic: a file name and a line number
+   * @return true if an element of {@code diagnostics} reports a leak at {@code location}
+   */
+  private static boolean reportedAt(List<String> diagnostics, String location) {
+    return diagnostics.stream()
+        .anyMatch(d -> d.startsWith(location) && d.contains("required.method.not.called"));
+  }
+}
@@ -0,0 +1,26 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.checker.objectconstruction.ObjectConstructionChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+public class SliceMustCallObligationsTest extends CheckerFrameworkPerDirectoryTest {
+  public SliceMustCallObligationsTest(List<File> testFiles) {
+    super(
+        testFiles,
+        ObjectConstructionChecker.class,
+        "mustcall",
+        "-Anomsgtext",
+        "-AcheckMustCall",
+        "-AcountMustCall",
+        "-AsliceMustCallObligations",
+        "-nowarn");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"mustcall"};
+  }
+}
@@ -0,0 +1,206 @@
+package tests;
+
+/**
+ * Generates a Java class with a single method, {@code run}, whose shape is controlled by the
+ * number of resources it allocates and by the number of branches, loops, try/catch statements and
+ * conditional expressions it contains. The class declares its own {@code @MustCall("close")}
+ * resource type, so that the generated source can be checked on its own. Every resource is closed
+ * on every normal path, so the checker reports no errors on the generated method; only the cost of
+ * checking it varies.
+ */
+final class SyntheticResourceMethod {
+
+  /** The number of resources allocated at the start and closed at the end of the method. */
+  private int resources = 1;
+
+  /** The number of sequential if statements, each of which may re-allocate a resource. */
+  private int branches = 0;
+
+  /** The depth of the nested if statements, each of which may re-allocate a resource. */
+  private int branchDepth = 0;
+
+  /** The depth of the nested loops, the innermost of which allocates and closes a resource. */
+  private int loopNesting = 0;
+
+  /** The number of sequential try/catch statements around a call that may throw. */
+  private int tryCatches = 0;
+
+  /** The number of sequential conditional expressions that each choose between two resources. */
+  private int ternaries = 0;
+
+  /**
+   * Sets the number of resources that are allocated at the start and closed at the end of the
+   * method. At least one resource is always allocated.
+   *
+   * @param resources the number of resources
+   * @return this
+   */
+  SyntheticResourceMethod resources(int resources) {
+    this.resources = Math.max(1, resources);
+    return this;
+  }
+
+  /**
+   * Sets the number of sequential if statements. Each closes one of the resources and allocates it
+   * again, so the paths through the method grow exponentially with this number.
+   *
+   * @param branches the number of if statements
+   * @return this
+   */
+  SyntheticResourceMethod branches(int branches) {
+    this.branches = branches;
+    return this;
+  }
+
+  /**
+   * Sets the depth of the nested if statements. Each closes one of the resources and allocates it
+   * again, so the paths through the method grow linearly with this number.
+   *
+   * @param branchDepth the depth of the if statements
+   * @return this
+   */
+  SyntheticResourceMethod branchDepth(int branchDepth) {
+    this.branchDepth = branchDepth;
+    return this;
+  }
+
+  /**
+   * Sets the depth of the nested loops.
+   *
+   * @param loopNesting the depth of the loops
+   * @return this
+   */
+  SyntheticResourceMethod loopNesting(int loopNesting) {
+    this.loopNesting = loopNesting;
+    return this;
+  }
+
+  /**
+   * Sets the number of sequential try/catch statements. The resources are live across each of
+   * them, so each adds an exceptional edge on which all the resources are tracked.
+   *
+   * @param tryCatches the number of try/catch statements
+   * @return this
+   */
+  SyntheticResourceMethod tryCatches(int tryCatches) {
+    this.tryCatches = tryCatches;
+    return this;
+  }
+
+  /**
+   * Sets the number of sequential conditional expressions, each of which chooses between two newly
+   * allocated resources, and closes the result.
+   *
+   * @param ternaries the number of conditional expressions
+   * @return this
+   */
+  SyntheticResourceMethod ternaries(int ternaries) {
+    this.ternaries = ternaries;
+    return this;
+  }
+
+  /**
+   * Returns the source of a class with the given name that contains the method.
+   *
+   * @param className the simple name of the class, which must be the name of its file
+   * @return the Java source of the class
+   */
+  String generate(String className) {
+    int numFlags = Math.max(1, Math.max(branches, Math.max(branchDepth, ternaries)));
+    StringBuilder sb = new StringBuilder();
+    sb.append("import java.io.IOException;\n");
+    sb.append("import org.checkerframework.checker.mustcall.qual.MustCall;\n\n");
+    sb.append("class ").append(className).append(" {\n\n");
+    sb.append("  @MustCall(\"close\")\n");
+    sb.append("  static class Resource {\n");
+    sb.append("    static Resource open(int id) {\n");
+    sb.append("      return new Resource();\n");
+    sb.append("    }\n\n");
+    sb.append("    static void mayFail() throws IOException {}\n\n");
+    sb.append("    void close() {}\n");
+    sb.append("  }\n\n");
+
+    sb.append("  void run(int n");
+    for (int i = 0; i < numFlags; i++) {
+      sb.append(", boolean b").append(i);
+    }
+    sb.append(") {\n");
+    for (int i = 0; i < resources; i++) {
+      sb.append("    Resource r").append(i).append(" = Resource.open(").append(i).append(");\n");
+    }
+
+    for (int i = 0; i < branches; i++) {
+      sb.append("    if (b").append(i).append(") {\n");
+      appendReopen(sb, i % resources, 3);
+      sb.append("    }\n");
+    }
+
+    for (int i = 0; i < branchDepth; i++) {
+      indent(sb, i + 2).append("if (b").append(i).append(") {\n");
+      appendReopen(sb, i % resources, i + 3);
+    }
+    for (int i = branchDepth - 1; i >= 0; i--) {
+      indent(sb, i + 2).append("}\n");
+    }
+
+    for (int i = 0; i < loopNesting; i++) {
+      indent(sb, i + 2);
+      sb.append("for (int i").append(i).append(" = 0; i").append(i).append(" < n; i");
+      sb.append(i).append("++) {\n");
+    }
+    if (loopNesting > 0) {
+      indent(sb, loopNesting + 2).append("Resource l = Resource.open(-1);\n");
+      indent(sb, loopNesting + 2).append("l.close();\n");
+    }
+    for (int i = loopNesting - 1; i >= 0; i--) {
+      indent(sb, i + 2).append("}\n");
+    }
+
+    for (int i = 0; i < tryCatches; i++) {
+      sb.append("    try {\n");
+      sb.append("      Resource.mayFail();\n");
+      sb.append("    } catch (IOException e").append(i).append(") {\n");
+      sb.append("    }\n");
+    }
+
+    for (int i = 0; i < ternaries; i++) {
+      sb.append("    Resource t").append(i).append(" = b").append(i);
+      sb.append(" ? Resource.open(-2) : Resource.open(-3);\n");
+      sb.append("    t").append(i).append(".close();\n");
+    }
+
+    for (int i = 0; i < resources; i++) {
+      sb.append("    r").append(i).append(".close();\n");
+    }
+    sb.append("  }\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Appends statements that close a resource and allocate it again.
+   *
+   * @param sb where to append the statements
+   * @param resource the index of the resource
+   * @param level the indentation level of the statements
+   */
+  private static void appendReopen(StringBuilder sb, int resource, int level) {
+    indent(sb, level).append("r").append(resource).append(".close();\n");
+    indent(sb, level).append("r").append(resource).append(" = Resource.open(");
+    sb.append(resource).append(");\n");
+  }
+
+  /**
+   * Appends two spaces for each indentation level.
+   *
+   * @param sb where to append the spaces
+   * @param level the indentation level
+   * @return {@code sb}
+   */
+  private static StringBuilder indent(StringBuilder sb, int level) {
+    for (int i = 0; i < level; i++) {
+      sb.append("  ");
+    }
+    return sb;
+  }
+}
@@ -0,0 +1,58 @@
+// A test that the must-call consistency check stops exploring paths separately once it has
+// processed the number of states given by -AmustCallStateLimit, and that it still finds leaks
+// after merging the remaining states.
+
+import java.net.Socket;
+
+class ManyBranches {
+
+  int fewBranches(boolean b) {
+    // :: error: required.method.not.called
+    Socket leaked = new Socket();
+    int x = 0;
+    if (b) {
+      x++;
+    }
+    return x;
+  }
+
+  // Each branch may add an alias of the socket, so each combination of branches reaches the
+  // end of the method with a different alias set.
+  // :: warning: must.call.budget.exceeded
+  int manyBranches(boolean b1, boolean b2, boolean b3, boolean b4, boolean b5, boolean b6) {
+    // :: error: required.method.not.called
+    Socket leaked = new Socket();
+    Socket a1 = null;
+    Socket a2 = null;
+    Socket a3 = null;
+    Socket a4 = null;
+    Socket a5 = null;
+    Socket a6 = null;
+    int x = 0;
+    if (b1) {
+      a1 = leaked;
+      x++;
+    }
+    if (b2) {
+      a2 = leaked;
+      x++;
+    }
+    if (b3) {
+      a3 = leaked;
+      x++;
+    }
+    if (b4) {
+      a4 = leaked;
+      x++;
+    }
+    if (b5) {
+      a5 = leaked;
+      x++;
+    }
+    if (b6) {
+      a6 = leaked;
+      x++;
+    }
+    return x;
+  }
+}
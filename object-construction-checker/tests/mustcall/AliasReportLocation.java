@@ -0,0 +1,34 @@
+// A test that an error about a set of aliases is reported on the alias that was tracked first,
+// which holds the result of the allocation, even if another alias of the set was first seen
+// on an earlier iteration of a loop.
+
+import org.checkerframework.checker.mustcall.qual.*;
+
+class AliasReportLocation {
+
+    @MustCall("a")
+    static class Foo {
+        void a() { }
+    }
+
+    static void straightLine() {
+        // :: error: required.method.not.called
+        Foo x = new Foo();
+        Foo alias = x;
+    }
+
+    static void loop(int n, boolean b) {
+        // :: error: required.method.not.called
+        Foo x = new Foo();
+        for (int i = 0; i < n; i++) {
+            Foo alias = x;
+            if (b) {
+                return;
+            }
+            alias.a();
+            // :: error: required.method.not.called
+            x = new Foo();
+        }
+        x.a();
+    }
+}
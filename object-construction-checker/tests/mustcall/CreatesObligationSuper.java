@@ -0,0 +1,53 @@
+// A test that calls to a @CreatesObligation method through super are treated like calls
+// through this.
+
+import org.checkerframework.checker.mustcall.qual.*;
+import org.checkerframework.checker.calledmethods.qual.*;
+import org.checkerframework.checker.objectconstruction.qual.*;
+
+@MustCall("a")
+class CreatesObligationSuper {
+
+    @CreatesObligation
+    void reset() { }
+
+    @CreatesObligation("#1")
+    void resetOther(CreatesObligationSuper other) { }
+
+    void a() { }
+
+    static class Sub extends CreatesObligationSuper {
+
+        @Override
+        @CreatesObligation
+        void reset() {
+            super.reset();
+        }
+
+        @CreatesObligation("this")
+        void resetThis() {
+            super.reset();
+        }
+
+        void resetNoAnno() {
+            // :: error: reset.not.owning
+            super.reset();
+        }
+
+        @CreatesObligation("#1")
+        void resetWrongTarget(Sub other) {
+            // :: error: reset.not.owning
+            super.reset();
+        }
+
+        @CreatesObligation("#1")
+        void resetOtherViaSuper(Sub other) {
+            super.resetOther(other);
+        }
+
+        void resetOtherNoAnno(Sub other) {
+            // :: error: reset.not.owning
+            super.resetOther(other);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// A test that joining the states of the paths that reach a program point, as the check does with
+// -AmergeMustCallStates, reports the same errors when the paths track different aliases of the
+// same resource.
+
+import java.io.IOException;
+import java.net.Socket;
+
+class JoinedAliasSets {
+
+    static void aliasOnOnePath(boolean b) throws IOException {
+        Socket s = new Socket("localhost", 5000);
+        Socket alias = null;
+        if (b) {
+            alias = s;
+        }
+        s.close();
+    }
+
+    static void closeAliasAfterJoin(boolean b) throws IOException {
+        Socket s = new Socket("localhost", 5000);
+        Socket alias = s;
+        if (b) {
+            s = null;
+        }
+        alias.close();
+    }
+
+    static void leakOnOnePath(boolean b) throws IOException {
+        // :: error: required.method.not.called
+        Socket s = new Socket("localhost", 5000);
+        Socket alias = null;
+        if (b) {
+            alias = s;
+            return;
+        }
+        s.close();
+    }
+}
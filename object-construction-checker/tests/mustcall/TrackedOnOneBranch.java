@@ -0,0 +1,77 @@
+// A test that a variable that is tracked on only one of the paths that reach a program point is
+// not treated as tracked there, including when the check joins the states of the paths, as it
+// does with -AmergeMustCallStates.
+
+import org.checkerframework.checker.mustcall.qual.*;
+import org.checkerframework.checker.calledmethods.qual.*;
+import org.checkerframework.checker.objectconstruction.qual.*;
+
+@MustCall("a")
+class TrackedOnOneBranch {
+
+    @MustCall("a")
+    static class Foo {
+        void a() { }
+    }
+
+    @MustCall("close")
+    static class Holder {
+        @Owning Foo foo;
+
+        @EnsuresCalledMethods(value = "this.foo", methods = "a")
+        void close() {
+            this.foo.a();
+        }
+    }
+
+    @CreatesObligation
+    void reset() { }
+
+    void a() { }
+
+    static void resetTargetTrackedOnOneBranch(TrackedOnOneBranch param, boolean b) {
+        TrackedOnOneBranch t = param;
+        if (b) {
+            t = new TrackedOnOneBranch();
+        }
+        // :: error: reset.not.owning
+        t.reset();
+        t.a();
+    }
+
+    static void resetTargetTrackedOnBothBranches(boolean b) {
+        TrackedOnOneBranch t;
+        if (b) {
+            t = new TrackedOnOneBranch();
+        } else {
+            t = new TrackedOnOneBranch();
+        }
+        t.reset();
+        t.a();
+    }
+
+    // :: error: missing.creates.obligation
+    static void receiverTrackedOnOneBranch(Holder param, boolean b) {
+        Holder h = param;
+        if (b) {
+            h = new Holder();
+        }
+        if (h.foo == null) {
+            h.foo = new Foo();
+        }
+        h.close();
+    }
+
+    static void receiverTrackedOnBothBranches(boolean b) {
+        Holder h;
+        if (b) {
+            h = new Holder();
+        } else {
+            h = new Holder();
+        }
+        if (h.foo == null) {
+            h.foo = new Foo();
+        }
+        h.close();
+    }
+}
@@ -0,0 +1,39 @@
+// A test that the must-call consistency check handles each tracked resource separately at the
+// successors of an allocation in a ternary or cast expression, so that the errors do not depend on
+// the order in which the resources are tracked. The directory is also checked with
+// -AsliceMustCallObligations, which tracks each resource on its own and expects the same errors.
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+
+class TwoResourcesTernary {
+
+    static void ternaryWhileAnotherIsLive(boolean b) throws IOException {
+        Socket s1 = new Socket("localhost", 5000);
+        // s2 is leaked if s1.close() throws.
+        // :: error: required.method.not.called
+        Socket s2 = b ? new Socket("localhost", 5001) : new Socket("localhost", 5002);
+        s1.close();
+        s2.close();
+    }
+
+    static void ternaryWhileAnotherIsLiveOk(boolean b) throws IOException {
+        Socket s1 = new Socket("localhost", 5000);
+        Socket s2 = b ? new Socket("localhost", 5001) : new Socket("localhost", 5002);
+        try {
+            s1.close();
+        } finally {
+            s2.close();
+        }
+    }
+
+    static void castWhileAnotherIsLive() throws IOException {
+        Socket s1 = new Socket("localhost", 5000);
+        // c is leaked if s1.close() throws.
+        // :: error: required.method.not.called
+        Closeable c = (Closeable) new Socket("localhost", 5001);
+        s1.close();
+        c.close();
+    }
+}